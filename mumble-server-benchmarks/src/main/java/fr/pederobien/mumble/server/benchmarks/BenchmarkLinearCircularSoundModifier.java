@@ -0,0 +1,20 @@
+package fr.pederobien.mumble.server.benchmarks;
+
+import fr.pederobien.mumble.server.impl.modifiers.LinearCircularSoundModifier;
+import fr.pederobien.mumble.server.interfaces.IPlayer;
+import fr.pederobien.vocal.common.impl.VolumeResult;
+
+public class BenchmarkLinearCircularSoundModifier extends LinearCircularSoundModifier {
+
+	/**
+	 * Exposes the protected dispatch method in order to measure it without the feedback check.
+	 * 
+	 * @param transmitter The player currently speaking.
+	 * @param receiver    The player currently hearing.
+	 * 
+	 * @return The volume calculated by the linear circular sound modifier.
+	 */
+	public VolumeResult callDispatch(IPlayer transmitter, IPlayer receiver) {
+		return dispatch(transmitter, receiver);
+	}
+}
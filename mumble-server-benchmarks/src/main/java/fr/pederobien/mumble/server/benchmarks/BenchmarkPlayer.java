@@ -0,0 +1,125 @@
+package fr.pederobien.mumble.server.benchmarks;
+
+import java.net.InetSocketAddress;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import fr.pederobien.mumble.server.interfaces.IChannel;
+import fr.pederobien.mumble.server.interfaces.IMumbleServer;
+import fr.pederobien.mumble.server.interfaces.IPlayer;
+import fr.pederobien.mumble.server.interfaces.IPosition;
+
+public class BenchmarkPlayer implements IPlayer {
+	private String name;
+	private UUID identifier;
+	private IPosition position;
+
+	/**
+	 * Creates a player that is not registered on any server, used to measure the calculations without the event dispatch.
+	 * 
+	 * @param name  The player name.
+	 * @param x     The x coordinate.
+	 * @param y     The y coordinate.
+	 * @param z     The z coordinate.
+	 * @param yaw   The yaw angle.
+	 * @param pitch The pitch angle.
+	 */
+	public BenchmarkPlayer(String name, double x, double y, double z, double yaw, double pitch) {
+		this.name = name;
+		identifier = UUID.randomUUID();
+		position = new BenchmarkPosition(this, x, y, z, yaw, pitch);
+	}
+
+	@Override
+	public IMumbleServer getServer() {
+		return null;
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	@Override
+	public InetSocketAddress getGameAddress() {
+		return null;
+	}
+
+	@Override
+	public void setGameAddress(InetSocketAddress gameAddress) {
+	}
+
+	@Override
+	public IPosition getPosition() {
+		return position;
+	}
+
+	@Override
+	public boolean isAdmin() {
+		return false;
+	}
+
+	@Override
+	public void setAdmin(boolean isAdmin) {
+	}
+
+	@Override
+	public boolean isOnline() {
+		return true;
+	}
+
+	@Override
+	public void setOnline(boolean isOnline) {
+	}
+
+	@Override
+	public UUID getIdentifier() {
+		return identifier;
+	}
+
+	@Override
+	public IChannel getChannel() {
+		return null;
+	}
+
+	@Override
+	public boolean isMute() {
+		return false;
+	}
+
+	@Override
+	public void setMute(boolean isMute) {
+	}
+
+	@Override
+	public boolean isMuteBy(IPlayer player) {
+		return false;
+	}
+
+	@Override
+	public void setMuteBy(IPlayer player, boolean isMute) {
+	}
+
+	@Override
+	public Stream<IPlayer> getMuteByPlayers() {
+		return Stream.empty();
+	}
+
+	@Override
+	public boolean isDeafen() {
+		return false;
+	}
+
+	@Override
+	public void setDeafen(boolean isDeafen) {
+	}
+
+	@Override
+	public void kick(IPlayer kickingPlayer) {
+	}
+}
@@ -0,0 +1,22 @@
+package fr.pederobien.mumble.server.benchmarks;
+
+import java.util.Random;
+
+import fr.pederobien.mumble.server.interfaces.IPlayer;
+
+public class BenchmarkPlayers {
+
+	/**
+	 * Creates a player at a random position in a cube whose the side is given, with a random yaw.
+	 * 
+	 * @param random The generator used to get the coordinates.
+	 * @param name   The player name.
+	 * @param side   The side length of the cube.
+	 * 
+	 * @return The created player.
+	 */
+	public static IPlayer random(Random random, String name, double side) {
+		double x = random.nextDouble() * side, y = random.nextDouble() * side, z = random.nextDouble() * side;
+		return new BenchmarkPlayer(name, x, y, z, (random.nextDouble() * 2 - 1) * Math.PI, 0);
+	}
+}
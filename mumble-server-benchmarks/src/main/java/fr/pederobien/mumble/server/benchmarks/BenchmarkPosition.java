@@ -0,0 +1,63 @@
+package fr.pederobien.mumble.server.benchmarks;
+
+import fr.pederobien.mumble.server.interfaces.IPlayer;
+import fr.pederobien.mumble.server.interfaces.IPosition;
+
+public class BenchmarkPosition implements IPosition {
+	private IPlayer player;
+	private double x, y, z, yaw, pitch;
+
+	/**
+	 * Creates a position that does not throw any event when updated, used to measure the calculations without the event dispatch.
+	 * 
+	 * @param player The player at this position, may be null.
+	 * @param x      The x coordinate.
+	 * @param y      The y coordinate.
+	 * @param z      The z coordinate.
+	 * @param yaw    The yaw angle.
+	 * @param pitch  The pitch angle.
+	 */
+	public BenchmarkPosition(IPlayer player, double x, double y, double z, double yaw, double pitch) {
+		this.player = player;
+		update(x, y, z, yaw, pitch);
+	}
+
+	@Override
+	public IPlayer getPlayer() {
+		return player;
+	}
+
+	@Override
+	public double getX() {
+		return x;
+	}
+
+	@Override
+	public double getY() {
+		return y;
+	}
+
+	@Override
+	public double getZ() {
+		return z;
+	}
+
+	@Override
+	public double getYaw() {
+		return yaw;
+	}
+
+	@Override
+	public double getPitch() {
+		return pitch;
+	}
+
+	@Override
+	public void update(double x, double y, double z, double yaw, double pitch) {
+		this.x = x;
+		this.y = y;
+		this.z = z;
+		this.yaw = yaw;
+		this.pitch = pitch;
+	}
+}
@@ -0,0 +1,22 @@
+package fr.pederobien.mumble.server.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+public class BenchmarkRunner {
+
+	/**
+	 * Runs the benchmarks of this module with the GC profiler, so that the allocation rate per operation (gc.alloc.rate.norm) is
+	 * reported next to the throughput. The arguments are the usual JMH command line options, for instance a regular expression to
+	 * select the benchmarks to run.
+	 * 
+	 * @param args The JMH command line options.
+	 */
+	public static void main(String[] args) throws CommandLineOptionException, RunnerException {
+		new Runner(new OptionsBuilder().parent(new CommandLineOptions(args)).addProfiler(GCProfiler.class).build()).run();
+	}
+}
@@ -0,0 +1,107 @@
+package fr.pederobien.mumble.server.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import fr.pederobien.mumble.server.impl.MathHelper;
+import fr.pederobien.mumble.server.impl.modifiers.Plan;
+import fr.pederobien.mumble.server.interfaces.IPosition;
+
+/**
+ * Compares the current {@link MathHelper} implementation with the {@link LegacyMathHelper} one. Each invocation works on one pair
+ * of positions among a fixed set of random positions, so that the branches of the stereo calculation are all exercised.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MathHelperBenchmark {
+	private static final int SIZE = 1024;
+	private IPosition[] from, to;
+	private double[] output;
+	private int index;
+
+	@Setup
+	public void setup() {
+		Random random = new Random(42);
+		from = new IPosition[SIZE];
+		to = new IPosition[SIZE];
+		for (int i = 0; i < SIZE; i++) {
+			from[i] = random(random);
+			to[i] = random(random);
+		}
+		output = new double[2];
+	}
+
+	@Benchmark
+	public double legacyDistance3D() {
+		int i = next();
+		return LegacyMathHelper.getDistance3D(from[i], to[i]);
+	}
+
+	@Benchmark
+	public double distance3D() {
+		int i = next();
+		return MathHelper.getDistance3D(from[i], to[i]);
+	}
+
+	@Benchmark
+	public double squaredDistance3D() {
+		int i = next();
+		return MathHelper.getSquaredDistance3D(from[i], to[i]);
+	}
+
+	@Benchmark
+	public double legacyDistance2D() {
+		int i = next();
+		return LegacyMathHelper.getDistance2D(from[i], to[i], Plan.XZ);
+	}
+
+	@Benchmark
+	public double distance2D() {
+		int i = next();
+		return MathHelper.getDistance2D(from[i], to[i], Plan.XZ);
+	}
+
+	@Benchmark
+	public double[] legacyLeftAndRightVolume() {
+		int i = next();
+		return LegacyMathHelper.getDefaultLeftAndRightVolume(from[i], to[i]);
+	}
+
+	@Benchmark
+	public double[] outputLeftAndRightVolume() {
+		int i = next();
+		return MathHelper.getDefaultLeftAndRightVolume(from[i], to[i], output);
+	}
+
+	@Benchmark
+	public void packedLeftAndRightVolume(Blackhole blackhole) {
+		int i = next();
+		long volumes = MathHelper.getPackedLeftAndRightVolume(from[i], to[i]);
+		blackhole.consume(MathHelper.getLeft(volumes));
+		blackhole.consume(MathHelper.getRight(volumes));
+	}
+
+	private int next() {
+		return index = (index + 1) & (SIZE - 1);
+	}
+
+	private IPosition random(Random random) {
+		return new BenchmarkPosition(null, random.nextDouble() * 100, random.nextDouble() * 100, random.nextDouble() * 100, (random.nextDouble() * 2 - 1) * Math.PI, 0);
+	}
+}
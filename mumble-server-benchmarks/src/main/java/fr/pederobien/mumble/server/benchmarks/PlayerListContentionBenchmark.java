@@ -0,0 +1,89 @@
+package fr.pederobien.mumble.server.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import fr.pederobien.mumble.server.impl.ServerPlayerList;
+import fr.pederobien.mumble.server.interfaces.IPlayer;
+import fr.pederobien.utils.event.EventManager;
+import fr.pederobien.utils.event.IEventListener;
+
+/**
+ * Measures the read throughput of the server player list while another thread keeps adding and removing players. The readers look
+ * players up by name and iterate over the whole list, as done by the request handlers.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PlayerListContentionBenchmark {
+	private static final int SIZE = 256;
+	private ServerPlayerList list;
+	private String[] names;
+	private int written;
+
+	@Setup
+	public void setup() {
+		list = new ServerPlayerList(null);
+		names = new String[SIZE];
+		for (int i = 0; i < SIZE; i++) {
+			names[i] = "Player" + i;
+			list.add(names[i], null, false, 0, 0, 0, 0, 0);
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		for (IPlayer player : list.toList())
+			EventManager.unregisterListener((IEventListener) player);
+		EventManager.unregisterListener(list);
+	}
+
+	@Benchmark
+	@Group("readWrite")
+	@GroupThreads(3)
+	public void get(Cursor cursor, Blackhole blackhole) {
+		cursor.index = (cursor.index + 1) & (SIZE - 1);
+		blackhole.consume(list.get(names[cursor.index]));
+	}
+
+	@Benchmark
+	@Group("readWrite")
+	@GroupThreads(3)
+	public void iterate(Blackhole blackhole) {
+		for (IPlayer player : list)
+			blackhole.consume(player);
+	}
+
+	@Benchmark
+	@Group("readWrite")
+	@GroupThreads(1)
+	public void write() {
+		IPlayer player = list.add("Writer" + (written++ & (SIZE - 1)), null, false, 0, 0, 0, 0, 0);
+		list.remove(player);
+
+		// Players register themselves as listener and are never unregistered outside of the server closure
+		EventManager.unregisterListener((IEventListener) player);
+	}
+
+	@State(Scope.Thread)
+	public static class Cursor {
+		private int index;
+	}
+}
@@ -0,0 +1,127 @@
+package fr.pederobien.mumble.server.benchmarks;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fr.pederobien.mumble.common.impl.MumbleIdentifier;
+import fr.pederobien.mumble.common.interfaces.IMumbleMessage;
+import fr.pederobien.mumble.server.impl.metrics.RequestMetrics;
+import fr.pederobien.mumble.server.impl.request.ServerRequestManager;
+
+/**
+ * Measures the overhead of dispatching a request: finding the handler associated to the identifier of the request, and finding the
+ * request manager associated to the version of the communication protocol. The previous structures (hash map, tree map with boxed
+ * versions and a capturing lambda per call) are compared with the current ones (enum map, flat version array and direct call). The
+ * handlers do nothing so that only the dispatch is measured, the creation of a real message is measured separately.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RequestDispatchBenchmark {
+	private static final float[] VERSIONS = new float[] { 1.0f, 1.1f };
+	private MumbleIdentifier[] identifiers;
+	private Map<MumbleIdentifier, Function<Integer, Integer>> hashHandlers, enumHandlers;
+	private NavigableMap<Float, Handler> treeManagers;
+	private Handler[] flatManagers;
+	private ServerRequestManager serverRequestManager;
+	private int index, port;
+
+	@Setup
+	public void setup() {
+		identifiers = MumbleIdentifier.values();
+		hashHandlers = new HashMap<MumbleIdentifier, Function<Integer, Integer>>();
+		enumHandlers = new EnumMap<MumbleIdentifier, Function<Integer, Integer>>(MumbleIdentifier.class);
+		for (MumbleIdentifier identifier : identifiers) {
+			hashHandlers.put(identifier, value -> value + identifier.ordinal());
+			enumHandlers.put(identifier, value -> value + identifier.ordinal());
+		}
+
+		treeManagers = new TreeMap<Float, Handler>();
+		flatManagers = new Handler[VERSIONS.length];
+		for (int i = 0; i < VERSIONS.length; i++) {
+			treeManagers.put(VERSIONS[i], new Handler(i));
+			flatManagers[i] = new Handler(i);
+		}
+
+		serverRequestManager = new ServerRequestManager(null, new RequestMetrics(null));
+	}
+
+	@Benchmark
+	public Integer legacyHandlerLookup() {
+		return hashHandlers.get(nextIdentifier()).apply(port);
+	}
+
+	@Benchmark
+	public Integer handlerLookup() {
+		return enumHandlers.get(nextIdentifier()).apply(port);
+	}
+
+	@Benchmark
+	public int legacyVersionLookup() {
+		int port = this.port++;
+		return findManagerAndApply(nextVersion(), manager -> manager.onGamePortCheck(port));
+	}
+
+	@Benchmark
+	public int versionLookup() {
+		Handler manager = getManager(nextVersion());
+		return manager == null ? -1 : manager.onGamePortCheck(port++);
+	}
+
+	@Benchmark
+	public IMumbleMessage createGamePortCheck() {
+		return serverRequestManager.onGamePortCheck(1.0f, port++);
+	}
+
+	private MumbleIdentifier nextIdentifier() {
+		index = index + 1 == identifiers.length ? 0 : index + 1;
+		return identifiers[index];
+	}
+
+	private float nextVersion() {
+		return VERSIONS[port & 1];
+	}
+
+	private int findManagerAndApply(float version, Function<Handler, Integer> function) {
+		Handler manager = treeManagers.get(version);
+		return manager == null ? -1 : function.apply(manager);
+	}
+
+	private Handler getManager(float version) {
+		for (int i = 0; i < VERSIONS.length; i++)
+			if (VERSIONS[i] == version)
+				return flatManagers[i];
+		return null;
+	}
+
+	private static class Handler {
+		private int offset;
+
+		private Handler(int offset) {
+			this.offset = offset;
+		}
+
+		private int onGamePortCheck(int port) {
+			return port + offset;
+		}
+	}
+}
@@ -0,0 +1,73 @@
+package fr.pederobien.mumble.server.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fr.pederobien.mumble.server.impl.modifiers.SoundModifier;
+import fr.pederobien.mumble.server.interfaces.IPlayer;
+import fr.pederobien.vocal.common.impl.VolumeResult;
+
+/**
+ * Measures the volume calculation between two players: the default sound modifier, the linear circular sound modifier through the
+ * public entry point and its dispatch method alone.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SoundModifierBenchmark {
+	private static final int SIZE = 1024;
+	private SoundModifier defaultModifier;
+	private BenchmarkLinearCircularSoundModifier linearCircular;
+	private IPlayer[] transmitters, receivers;
+	private int index;
+
+	@Setup
+	public void setup() {
+		defaultModifier = new SoundModifier("Default");
+		linearCircular = new BenchmarkLinearCircularSoundModifier();
+
+		Random random = new Random(42);
+		transmitters = new IPlayer[SIZE];
+		receivers = new IPlayer[SIZE];
+		for (int i = 0; i < SIZE; i++) {
+			transmitters[i] = BenchmarkPlayers.random(random, "Transmitter" + i, 100);
+			receivers[i] = BenchmarkPlayers.random(random, "Receiver" + i, 100);
+		}
+	}
+
+	@Benchmark
+	public VolumeResult defaultCalculate() {
+		int i = next();
+		return defaultModifier.calculate(transmitters[i], receivers[i]);
+	}
+
+	@Benchmark
+	public VolumeResult linearCircularCalculate() {
+		int i = next();
+		return linearCircular.calculate(transmitters[i], receivers[i]);
+	}
+
+	@Benchmark
+	public VolumeResult linearCircularDispatch() {
+		int i = next();
+		return linearCircular.callDispatch(transmitters[i], receivers[i]);
+	}
+
+	private int next() {
+		return index = (index + 1) & (SIZE - 1);
+	}
+}
@@ -0,0 +1,116 @@
+package fr.pederobien.mumble.server.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fr.pederobien.mumble.server.impl.BenchmarkSpeakPath;
+import fr.pederobien.mumble.server.impl.SimpleMumbleServer;
+import fr.pederobien.mumble.server.impl.SoundManager;
+import fr.pederobien.mumble.server.impl.modifiers.LinearCircularSoundModifier;
+import fr.pederobien.mumble.server.interfaces.IChannel;
+import fr.pederobien.mumble.server.interfaces.IPlayer;
+import fr.pederobien.mumble.server.interfaces.IPosition;
+import fr.pederobien.vocal.common.impl.VolumeResult;
+
+/**
+ * Measures the fan-out of one audio sample by a channel: the volume of the sample is calculated for each player of the channel
+ * through the speak path of the channel player list, that is to say the snapshot of the players, the spatial grid, the volume cache
+ * and the batch calculation of the sound modifier. The players belong to a server that is not opened. When the transmitter moves
+ * before speaking, its cached volumes are invalid and are calculated again.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SpeakFanOutBenchmark {
+
+	@Param({ "10", "100", "1000" })
+	private int receivers;
+
+	@Param({ SoundManager.DEFAULT_SOUND_MODIFIER_NAME, "LinearCircular" })
+	private String soundModifier;
+
+	@Param({ "false", "true" })
+	private boolean moving;
+
+	private Path directory;
+	private SimpleMumbleServer server;
+	private IChannel channel;
+	private IPlayer[] players;
+	private Map<IPlayer, VolumeResult> results;
+	private BiConsumer<IPlayer, VolumeResult> action;
+	private int transmitter;
+	private double step;
+
+	@Setup
+	public void setup() throws IOException {
+		directory = Files.createTempDirectory("mumble-server-benchmarks");
+		server = new SimpleMumbleServer("SpeakFanOut", directory.toString());
+		channel = server.getChannels().add("Benchmark", SoundManager.DEFAULT_SOUND_MODIFIER_NAME);
+		if (soundModifier.equals("LinearCircular"))
+			channel.setSoundModifier(new LinearCircularSoundModifier());
+
+		// All players are in the audible range of each other
+		Random random = new Random(42);
+		players = new IPlayer[receivers];
+		for (int i = 0; i < receivers; i++) {
+			double x = random.nextDouble() * 25, y = random.nextDouble() * 25, z = random.nextDouble() * 25;
+			players[i] = server.getPlayers().add("Player" + i, null, false, x, y, z, (random.nextDouble() * 2 - 1) * Math.PI, 0);
+			channel.getPlayers().add(players[i]);
+		}
+
+		results = new HashMap<IPlayer, VolumeResult>(receivers * 2);
+		action = results::put;
+		step = 0.5;
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		server.getChannels().clear();
+		server.getPlayers().clear();
+		Files.deleteIfExists(directory);
+	}
+
+	@Benchmark
+	public Map<IPlayer, VolumeResult> speak() {
+		IPlayer speaking = next();
+		if (moving) {
+			IPosition position = speaking.getPosition();
+			position.update(position.getX() + step, position.getY(), position.getZ(), position.getYaw(), position.getPitch());
+		}
+
+		results.clear();
+		BenchmarkSpeakPath.speak(channel, speaking, action);
+		return results;
+	}
+
+	private IPlayer next() {
+		transmitter = transmitter + 1 == receivers ? 0 : transmitter + 1;
+
+		// Going back and forth so that the players stay in the audible range of each other
+		if (transmitter == 0)
+			step = -step;
+		return players[transmitter];
+	}
+}
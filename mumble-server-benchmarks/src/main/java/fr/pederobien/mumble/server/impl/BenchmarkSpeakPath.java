@@ -0,0 +1,25 @@
+package fr.pederobien.mumble.server.impl;
+
+import java.util.function.BiConsumer;
+
+import fr.pederobien.mumble.server.interfaces.IChannel;
+import fr.pederobien.mumble.server.interfaces.IPlayer;
+import fr.pederobien.vocal.common.impl.VolumeResult;
+
+public class BenchmarkSpeakPath {
+
+	private BenchmarkSpeakPath() {
+	}
+
+	/**
+	 * Runs the speak path of the player list of the given channel, as done by the channel list of the server when the transmitter
+	 * speaks, without a vocal server.
+	 *
+	 * @param channel     The channel of the transmitter.
+	 * @param transmitter The player currently speaking.
+	 * @param action      The action that receives the volume of each receiver.
+	 */
+	public static void speak(IChannel channel, IPlayer transmitter, BiConsumer<IPlayer, VolumeResult> action) {
+		((ChannelPlayerList) channel.getPlayers()).onPlayerSpeak(transmitter, action);
+	}
+}
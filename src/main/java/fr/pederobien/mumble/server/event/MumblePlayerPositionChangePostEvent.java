@@ -10,7 +10,8 @@ public class MumblePlayerPositionChangePostEvent extends MumblePlayerEvent {
 	private double x, y, z, yaw, pitch;
 
 	/**
-	 * Creates an event thrown when the coordinates of a player has changed.
+	 * Creates an event thrown when the coordinates of a player has changed. When the position of several players is updated at
+	 * once, a {@link MumbleServerPlayersPositionChangePostEvent} is thrown instead.
 	 * 
 	 * @param player The player whose the coordinates has changed.
 	 * @param x      The old x coordinates.
@@ -0,0 +1,38 @@
+package fr.pederobien.mumble.server.event;
+
+import java.util.List;
+import java.util.StringJoiner;
+
+import fr.pederobien.mumble.server.interfaces.IPlayer;
+import fr.pederobien.mumble.server.interfaces.IServerPlayerList;
+
+public class MumbleServerPlayersPositionChangePostEvent extends MumbleServerPlayerListEvent {
+	private List<IPlayer> players;
+
+	/**
+	 * Creates an event thrown when the coordinates of several players have changed at once. It is thrown instead of one
+	 * {@link MumblePlayerPositionChangePostEvent} per player.
+	 * 
+	 * @param list    The list that contains the players.
+	 * @param players The players whose the coordinates have changed.
+	 */
+	public MumbleServerPlayersPositionChangePostEvent(IServerPlayerList list, List<IPlayer> players) {
+		super(list);
+		this.players = players;
+	}
+
+	/**
+	 * @return The players whose the coordinates have changed.
+	 */
+	public List<IPlayer> getPlayers() {
+		return players;
+	}
+
+	@Override
+	public String toString() {
+		StringJoiner joiner = new StringJoiner(", ", "{", "}");
+		joiner.add("list=" + getList().getName());
+		joiner.add("players=" + getPlayers().size());
+		return String.format("%s_%s", getName(), joiner);
+	}
+}
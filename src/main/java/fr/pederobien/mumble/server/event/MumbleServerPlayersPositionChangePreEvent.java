@@ -0,0 +1,49 @@
+package fr.pederobien.mumble.server.event;
+
+import java.util.List;
+import java.util.StringJoiner;
+
+import fr.pederobien.mumble.server.interfaces.IPlayer;
+import fr.pederobien.mumble.server.interfaces.IServerPlayerList;
+import fr.pederobien.utils.ICancellable;
+
+public class MumbleServerPlayersPositionChangePreEvent extends MumbleServerPlayerListEvent implements ICancellable {
+	private boolean isCancelled;
+	private List<IPlayer> players;
+
+	/**
+	 * Creates an event thrown when the coordinates of several players are about to change at once.
+	 * 
+	 * @param list    The list that contains the players.
+	 * @param players The players whose the coordinates are about to change.
+	 */
+	public MumbleServerPlayersPositionChangePreEvent(IServerPlayerList list, List<IPlayer> players) {
+		super(list);
+		this.players = players;
+	}
+
+	@Override
+	public boolean isCancelled() {
+		return isCancelled;
+	}
+
+	@Override
+	public void setCancelled(boolean isCancelled) {
+		this.isCancelled = isCancelled;
+	}
+
+	/**
+	 * @return The players whose the coordinates are about to change.
+	 */
+	public List<IPlayer> getPlayers() {
+		return players;
+	}
+
+	@Override
+	public String toString() {
+		StringJoiner joiner = new StringJoiner(", ", "{", "}");
+		joiner.add("list=" + getList().getName());
+		joiner.add("players=" + getPlayers().size());
+		return String.format("%s_%s", getName(), joiner);
+	}
+}
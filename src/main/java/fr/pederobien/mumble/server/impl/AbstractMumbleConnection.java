@@ -1,15 +1,19 @@
 package fr.pederobien.mumble.server.impl;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.Condition;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Consumer;
 
 import fr.pederobien.communication.ResponseCallbackArgs;
-import fr.pederobien.communication.event.UnexpectedDataReceivedEvent;
 import fr.pederobien.communication.interfaces.ITcpConnection;
 import fr.pederobien.mumble.common.impl.MumbleCallbackMessage;
+import fr.pederobien.mumble.common.impl.MumbleIdentifier;
 import fr.pederobien.mumble.common.impl.messages.v10.GetCommunicationProtocolVersionsV10;
 import fr.pederobien.mumble.common.impl.messages.v10.SetCommunicationProtocolVersionV10;
 import fr.pederobien.mumble.common.interfaces.IMumbleMessage;
@@ -18,21 +22,72 @@ import fr.pederobien.utils.event.EventManager;
 import fr.pederobien.utils.event.LogEvent;
 
 public abstract class AbstractMumbleConnection {
-	private IMumbleServer server;
+	/**
+	 * The default time, in ms, to wait for an answer from the remote.
+	 */
+	public static final int DEFAULT_TIMEOUT = 1000;
+
+	/**
+	 * The maximum time, in ms, to negotiate the version of the communication protocol with the remote.
+	 */
+	public static final int HANDSHAKE_TIMEOUT = 5000;
+
+	/**
+	 * The maximum number of requests received from the remote that can be queued while the negotiation is not over.
+	 */
+	public static final int MAX_PENDING_REQUESTS = 256;
+
+	public enum HandshakeState {
+		/**
+		 * The version of the communication protocol is being negotiated with the remote, the received requests are queued.
+		 */
+		NEGOTIATING,
+
+		/**
+		 * A common version of the communication protocol has been found, the received requests are processed.
+		 */
+		ESTABLISHED,
+
+		/**
+		 * No common version of the communication protocol has been found, the connection has been disposed.
+		 */
+		FAILED
+	}
+
+	private AbstractMumbleServer server;
 	private ITcpConnection connection;
-	private float version;
+	private OutboundQueue queue;
+	private volatile float version;
+	private volatile HandshakeState state;
+	private Deque<IMumbleMessage> pendingRequests;
+	private ScheduledFuture<?> deadline;
+	private RequestExecutor.Lane lane;
+	private RttEstimator rtt;
+	private Lock lock;
 
 	/**
-	 * Creates a mumble connection in order to send or receive requests from the remote.
+	 * Creates a mumble connection in order to send or receive requests from the remote. The requests received from the remote are
+	 * queued until a version of the communication protocol has been negotiated, see {@link #startHandshake()}, and then given to
+	 * {@link #onRequest(IMumbleMessage)} by the request executor of the server, so that the thread that receives data from the
+	 * network is never blocked by the processing of a request.
 	 * 
 	 * @param server     The server associated to this connection.
 	 * @param connection The TCP connection with the remote.
 	 */
-	protected AbstractMumbleConnection(IMumbleServer server, ITcpConnection connection) {
+	protected AbstractMumbleConnection(AbstractMumbleServer server, ITcpConnection connection) {
 		this.server = server;
 		this.connection = connection;
+		queue = createQueue(connection);
 
 		version = -1;
+		state = HandshakeState.NEGOTIATING;
+		pendingRequests = new ArrayDeque<IMumbleMessage>();
+		lane = server.getRequestExecutor().newLane();
+		rtt = new RttEstimator(DEFAULT_TIMEOUT);
+		lock = new ReentrantLock(true);
+
+		if (connection != null)
+			getRouter().register(connection, this);
 	}
 
 	/**
@@ -42,6 +97,13 @@ public abstract class AbstractMumbleConnection {
 		return server;
 	}
 
+	/**
+	 * @return The server associated to this mumble connection, with access to its executors, its dispatcher and its metrics.
+	 */
+	protected AbstractMumbleServer getMumbleServer() {
+		return server;
+	}
+
 	/**
 	 * @return The version of the communication protocol to use.
 	 */
@@ -49,6 +111,27 @@ public abstract class AbstractMumbleConnection {
 		return version;
 	}
 
+	/**
+	 * @return The time, in ms, to wait for an answer from the remote, adapted to the round trip time measured with the remote.
+	 */
+	public int getTimeout() {
+		return rtt.getTimeout();
+	}
+
+	/**
+	 * @return The estimator of the round trip time with the remote.
+	 */
+	public RttEstimator getRttEstimator() {
+		return rtt;
+	}
+
+	/**
+	 * @return The state of the negotiation of the communication protocol version with the remote.
+	 */
+	public HandshakeState getHandshakeState() {
+		return state;
+	}
+
 	/**
 	 * @return The TCP connection with the remote.
 	 */
@@ -62,85 +145,220 @@ public abstract class AbstractMumbleConnection {
 	 * @param connection The TCP connection in order to send or receive requests from the remote.
 	 */
 	protected void setTcpConnection(ITcpConnection connection) {
-		this.connection = connection;
-	}
+		if (queue != null)
+			queue.dispose();
 
-	protected IMumbleMessage checkReceivedRequest(UnexpectedDataReceivedEvent event) {
-		if (!event.getConnection().equals(getTcpConnection()))
-			return null;
+		if (this.connection != null)
+			getRouter().unregister(this.connection, this);
 
-		try {
-			return MumbleServerMessageFactory.parse(event.getBuffer());
-		} catch (Exception e) {
-			return null;
-		}
+		this.connection = connection;
+		queue = createQueue(connection);
+
+		if (connection != null)
+			getRouter().register(connection, this);
 	}
 
 	/**
-	 * @return true if a common version of the communication protocol has been found, false otherwise.
+	 * Starts the negotiation of the communication protocol version with the remote. This method does not block, the requests
+	 * received from the remote are queued until the negotiation is over. Once a common version has been found, the queued requests
+	 * are processed and the method {@link #onHandshakeEstablished()} is called. Otherwise the connection is disposed and the method
+	 * {@link #onHandshakeFailed()} is called. The negotiation fails if it is not over after {@value #HANDSHAKE_TIMEOUT} ms or if more
+	 * than {@value #MAX_PENDING_REQUESTS} requests are received meanwhile.
 	 */
-	protected boolean establishCommunicationProtocolVersion() {
-		Lock lock = new ReentrantLock(true);
-		Condition received = lock.newCondition();
-
-		version = -1;
-		getCommunicationProtocolVersion(lock, received);
-
+	protected void startHandshake() {
 		lock.lock();
 		try {
-			if (!received.await(5000, TimeUnit.MILLISECONDS) || version == -1) {
-				connection.dispose();
-				return false;
+			version = -1;
+			state = HandshakeState.NEGOTIATING;
+			pendingRequests.clear();
+			cancelDeadline();
+			try {
+				deadline = server.getScheduler().schedule(() -> onDeadline(), HANDSHAKE_TIMEOUT, TimeUnit.MILLISECONDS);
+			} catch (RejectedExecutionException e) {
+				// The server is closing, the connection is about to be disposed
 			}
-		} catch (InterruptedException e) {
-			// Do nothing
 		} finally {
 			lock.unlock();
 		}
 
-		return true;
+		getCommunicationProtocolVersion();
+	}
+
+	/**
+	 * Method called when a common version of the communication protocol has been found, before processing the queued requests.
+	 */
+	protected void onHandshakeEstablished() {
 	}
 
-	private void getCommunicationProtocolVersion(Lock lock, Condition received) {
+	/**
+	 * Method called when no common version of the communication protocol has been found, after the connection has been disposed.
+	 */
+	protected void onHandshakeFailed() {
+	}
+
+	/**
+	 * Process a request received from the remote. Requests are given to this method in the order they have been received, one after
+	 * the other, and only once the version of the communication protocol has been negotiated. This method is not called by the thread
+	 * that received the request.
+	 * 
+	 * @param request The request received from the remote.
+	 */
+	protected abstract void onRequest(IMumbleMessage request);
+
+	private void getCommunicationProtocolVersion() {
 		// Step 1: Asking the latest version of the communication protocol supported by the remote
 		send(server.getRequestManager().getCommunicationProtocolVersion(), args -> {
 			if (args.isTimeout()) {
 				EventManager.callEvent(new LogEvent("Client did not answer to GET_COMMUNICATION_PROTOCOL_VERSIONS in time, disposing connection ..."));
 				// No need to wait more
-				exit(lock, received);
+				fail();
 			} else {
-				GetCommunicationProtocolVersionsV10 message = (GetCommunicationProtocolVersionsV10) MumbleServerMessageFactory.parse(args.getResponse().getBytes());
-				setCommunicationProtocolVersion(lock, received, findHighestVersion(message.getVersions()));
+				try {
+					GetCommunicationProtocolVersionsV10 message = (GetCommunicationProtocolVersionsV10) MumbleServerMessageFactory.parse(args.getResponse().getBytes());
+					setCommunicationProtocolVersion(findHighestVersion(message.getVersions()));
+				} catch (RuntimeException e) {
+					EventManager.callEvent(new LogEvent("Unexpected answer to GET_COMMUNICATION_PROTOCOL_VERSIONS: %s, disposing connection ...", e.getMessage()));
+					fail();
+				}
 			}
 		});
 	}
 
-	private void setCommunicationProtocolVersion(Lock lock, Condition received, float version) {
+	private void setCommunicationProtocolVersion(float version) {
 		// Step 2: Setting a specific version of the communication protocol to use for the client-server communication.
 		send(server.getRequestManager().setCommunicationProtocolVersion(version), args -> {
 			if (!args.isTimeout()) {
-				SetCommunicationProtocolVersionV10 message = (SetCommunicationProtocolVersionV10) MumbleServerMessageFactory.parse(args.getResponse().getBytes());
-				if (message.getVersion() == version)
-					this.version = version;
+				try {
+					SetCommunicationProtocolVersionV10 message = (SetCommunicationProtocolVersionV10) MumbleServerMessageFactory.parse(args.getResponse().getBytes());
+					if (message.getVersion() == version) {
+						this.version = version;
+						establish();
+						return;
+					}
+				} catch (RuntimeException e) {
+					EventManager.callEvent(new LogEvent("Unexpected answer to SET_COMMUNICATION_PROTOCOL_VERSION: %s, disposing connection ...", e.getMessage()));
+				}
 			} else
 				EventManager.callEvent(new LogEvent("Client did not answer to SET_COMMUNICATION_PROTOCOL_VERSION in time, disposing connection ..."));
 
-			exit(lock, received);
+			fail();
 		});
 	}
 
-	private void exit(Lock lock, Condition received) {
+	/**
+	 * Step 3: Processing the requests received during the negotiation. They are given to the lane of this connection before any new
+	 * request in order to keep the order of reception.
+	 */
+	private void establish() {
+		lock.lock();
+		try {
+			// The deadline has been reached meanwhile
+			if (state != HandshakeState.NEGOTIATING)
+				return;
+			cancelDeadline();
+		} finally {
+			lock.unlock();
+		}
+
+		onHandshakeEstablished();
+
+		lock.lock();
+		try {
+			// The negotiation has failed while the handshake was being established
+			if (state != HandshakeState.NEGOTIATING)
+				return;
+
+			state = HandshakeState.ESTABLISHED;
+
+			IMumbleMessage request;
+			while ((request = pendingRequests.poll()) != null)
+				execute(request);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Gives the request to the lane of this connection, it is processed once the previously received requests have been processed.
+	 * 
+	 * @param request The request to process.
+	 */
+	private void execute(IMumbleMessage request) {
+		lane.execute(() -> onRequest(request));
+	}
+
+	private void fail() {
 		lock.lock();
 		try {
-			received.signal();
+			if (state == HandshakeState.FAILED)
+				return;
+
+			state = HandshakeState.FAILED;
+			pendingRequests.clear();
+			cancelDeadline();
+		} finally {
+			lock.unlock();
+		}
+
+		getRouter().unregister(connection, this);
+		connection.dispose();
+		onHandshakeFailed();
+	}
+
+	/**
+	 * Queues the given request if the negotiation is not over, otherwise gives the request to the lane of this connection. Called by
+	 * the {@link InboundRouter} of the server once the data received from the remote have been parsed.
+	 * 
+	 * @param request The request received from the remote.
+	 */
+	void receive(IMumbleMessage request) {
+		lock.lock();
+		try {
+			switch (state) {
+			case FAILED:
+				return;
+			case NEGOTIATING:
+				if (pendingRequests.size() < MAX_PENDING_REQUESTS) {
+					pendingRequests.add(request);
+					return;
+				}
+				break;
+			default:
+				execute(request);
+				return;
+			}
 		} finally {
 			lock.unlock();
 		}
+
+		EventManager.callEvent(new LogEvent("Too many requests received during the handshake with %s, disposing connection ...", connection.getAddress()));
+		fail();
+	}
+
+	/**
+	 * Fails the negotiation if it is not over once the handshake deadline has been reached.
+	 */
+	private void onDeadline() {
+		if (state != HandshakeState.NEGOTIATING)
+			return;
+
+		EventManager.callEvent(new LogEvent("Handshake not completed within %s ms, disposing connection ...", HANDSHAKE_TIMEOUT));
+		fail();
+	}
+
+	/**
+	 * Cancels the deadline of the current negotiation, if any. Not thread safe.
+	 */
+	private void cancelDeadline() {
+		if (deadline != null) {
+			deadline.cancel(false);
+			deadline = null;
+		}
 	}
 
 	private float findHighestVersion(float[] versions) {
 		float version = -1;
-		for (int i = versions.length - 1; 0 < i; i--) {
+		for (int i = versions.length - 1; 0 <= i; i--) {
 			if (server.getRequestManager().isSupported(versions[i])) {
 				version = versions[i];
 				break;
@@ -156,30 +374,137 @@ public abstract class AbstractMumbleConnection {
 	 * @param message The request to send to the remote.
 	 */
 	public void send(IMumbleMessage message) {
-		send(message, null);
+		send(message, null, DEFAULT_TIMEOUT);
 	}
 
 	/**
-	 * Send a request to the remote and expect an answer.
+	 * Send a request to the remote and expect an answer. The request timeout is adapted to the round trip time measured with the
+	 * remote, see {@link #getTimeout()}.
 	 * 
 	 * @param message  The request to send to the remote.
 	 * @param callback The callback to run when an answer is received from the server.
 	 */
 	public void send(IMumbleMessage message, Consumer<ResponseCallbackArgs> callback) {
-		send(message, callback, 1000);
+		send(message, callback, getTimeout());
 	}
 
 	/**
-	 * Send a request to the remote and expect an answer.
+	 * Send a request to the remote and expect an answer. Several requests can be pending at the same time, each answer is given to the
+	 * callback of its request. The time elapsed between the writing of the request on the connection and the answer is used to update
+	 * the round trip time with the remote, so that the time spent in the outbound queue is not taken into account.
 	 * 
 	 * @param message  The request to send to the remote.
 	 * @param callback The callback to run when an answer is received from the server.
 	 * @param timeout  The request timeout.
 	 */
 	public void send(IMumbleMessage message, Consumer<ResponseCallbackArgs> callback, int timeout) {
+		send(message, callback, timeout, null);
+	}
+
+	/**
+	 * Send a request to the remote and expect an answer. The request can be withdrawn with {@link #cancel(OutboundQueue.Key)} as long
+	 * as it has not been written on the connection, in which case the callback is never run.
+	 * 
+	 * @param message  The request to send to the remote.
+	 * @param callback The callback to run when an answer is received from the server.
+	 * @param timeout  The request timeout.
+	 * @param key      The key used to cancel the request, null if the request cannot be cancelled.
+	 */
+	public void send(IMumbleMessage message, Consumer<ResponseCallbackArgs> callback, int timeout, OutboundQueue.Key key) {
+		if (callback == null) {
+			enqueue(new MumbleCallbackMessage(message, null, timeout), key, false, null);
+			return;
+		}
+
+		AtomicLong start = new AtomicLong(System.nanoTime());
+		enqueue(new MumbleCallbackMessage(message, measure(callback, start), timeout), key, true, () -> start.set(System.nanoTime()));
+	}
+
+	/**
+	 * Withdraws the message associated to the given key if it has not been written on the connection yet.
+	 * 
+	 * @param key The key of the message to withdraw.
+	 */
+	public void cancel(OutboundQueue.Key key) {
+		if (queue != null)
+			queue.cancel(key);
+	}
+
+	/**
+	 * Send the answer to a request received from the remote. Answers are never discarded by the overflow policy of the server, so
+	 * that a slow remote always receives the answers to its own requests.
+	 * 
+	 * @param answer The answer to send to the remote.
+	 */
+	protected void answer(IMumbleMessage answer) {
+		enqueue(new MumbleCallbackMessage(answer, null, DEFAULT_TIMEOUT), null, true, null);
+	}
+
+	/**
+	 * Send a notification to the remote. If a notification with the same key has not been sent yet, it is replaced in place by the
+	 * given notification.
+	 * 
+	 * @param message The notification to send to the remote.
+	 * @param key     The key used to coalesce notifications, see {@link OutboundQueue#key(MumbleIdentifier, Object)}.
+	 */
+	public void send(IMumbleMessage message, OutboundQueue.Key key) {
+		enqueue(new MumbleCallbackMessage(message, null, DEFAULT_TIMEOUT), key, false, null);
+	}
+
+	/**
+	 * Send an already serialized notification to the remote. The same message can be shared by several connections in order to avoid
+	 * serializing it once per remote.
+	 * 
+	 * @param message The notification to send to the remote.
+	 */
+	public void send(MumbleCallbackMessage message) {
+		enqueue(message, null, false, null);
+	}
+
+	/**
+	 * Send an already serialized notification to the remote. If a notification with the same key has not been sent yet, it is
+	 * replaced in place by the given notification.
+	 * 
+	 * @param message The notification to send to the remote.
+	 * @param key     The key used to coalesce notifications, see {@link OutboundQueue#key(MumbleIdentifier, Object)}.
+	 */
+	public void send(MumbleCallbackMessage message, OutboundQueue.Key key) {
+		enqueue(message, key, false, null);
+	}
+
+	private void enqueue(MumbleCallbackMessage message, OutboundQueue.Key key, boolean isReliable, Runnable onWrite) {
 		if (connection == null || connection.isDisposed())
 			return;
 
-		connection.send(new MumbleCallbackMessage(message, callback, timeout));
+		queue.offer(message, key, isReliable, onWrite);
+	}
+
+	/**
+	 * Wraps the given callback in order to update the round trip time with the remote when the answer is received.
+	 * 
+	 * @param callback The callback to run when an answer is received from the server.
+	 * @param start    The time, in nanoseconds, at which the request has been written on the connection.
+	 * 
+	 * @return The wrapped callback.
+	 */
+	private Consumer<ResponseCallbackArgs> measure(Consumer<ResponseCallbackArgs> callback, AtomicLong start) {
+		return args -> {
+			if (args.isTimeout())
+				rtt.onTimeout();
+			else
+				rtt.onAnswer(System.nanoTime() - start.get());
+			callback.accept(args);
+		};
+	}
+
+	private InboundRouter getRouter() {
+		return server.getInboundRouter();
+	}
+
+	private OutboundQueue createQueue(ITcpConnection connection) {
+		if (connection == null)
+			return null;
+
+		return new OutboundQueue(connection, server.getWriters(), server.getOutboundCapacity(), server.getOverflowPolicy());
 	}
 }
@@ -1,7 +1,18 @@
 package fr.pederobien.mumble.server.impl;
 
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import fr.pederobien.communication.impl.TcpServer;
 import fr.pederobien.mumble.common.impl.MumbleMessageExtractor;
+import fr.pederobien.mumble.server.impl.OutboundQueue.OverflowPolicy;
+import fr.pederobien.mumble.server.impl.metrics.RequestMetrics;
 import fr.pederobien.mumble.server.impl.modifiers.LinearCircularSoundModifier;
 import fr.pederobien.mumble.server.impl.request.ServerRequestManager;
 import fr.pederobien.mumble.server.interfaces.IChannelList;
@@ -16,6 +27,8 @@ import fr.pederobien.vocal.server.interfaces.IVocalServer;
 public abstract class AbstractMumbleServer implements IMumbleServer {
 	private static final String CONFIGURATION = "Configuration";
 	private static final String VOCAL = "Vocal";
+	private static final String WRITER = "Writer";
+	private static final String SCHEDULER = "Scheduler";
 
 	private String name;
 	private int configurationPort, vocalPort;
@@ -24,7 +37,15 @@ public abstract class AbstractMumbleServer implements IMumbleServer {
 	private IChannelList channels;
 	private IServerPlayerList players;
 	private IServerRequestManager serverRequestManager;
+	private RequestMetrics requestMetrics;
 	private ClientList clients;
+	private ClientDispatcher dispatcher;
+	private ExecutorService writers;
+	private ScheduledExecutorService scheduler;
+	private RequestExecutor requestExecutor;
+	private InboundRouter router;
+	private int outboundCapacity;
+	private OverflowPolicy overflowPolicy;
 
 	/**
 	 * Creates a mumble server with a specific name.
@@ -36,8 +57,20 @@ public abstract class AbstractMumbleServer implements IMumbleServer {
 
 		channels = new ChannelList(this);
 		players = new ServerPlayerList(this);
-		serverRequestManager = new ServerRequestManager(this);
+		requestMetrics = new RequestMetrics(this);
+		serverRequestManager = new ServerRequestManager(this, requestMetrics);
 		clients = new ClientList(this);
+		dispatcher = new ClientDispatcher(this);
+		writers = createWriters(name);
+		scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, String.format("%s_%s", name, SCHEDULER));
+			thread.setDaemon(true);
+			return thread;
+		});
+		requestExecutor = new RequestExecutor(name);
+		router = new InboundRouter();
+		outboundCapacity = OutboundQueue.DEFAULT_CAPACITY;
+		overflowPolicy = OverflowPolicy.DROP_OLDEST;
 
 		registerModifiers();
 	}
@@ -51,14 +84,24 @@ public abstract class AbstractMumbleServer implements IMumbleServer {
 	public void open() {
 		tcpServer.connect();
 		vocalServer.open();
+		requestMetrics.registerMBean();
+		requestMetrics.startReporting(scheduler, RequestMetrics.DEFAULT_REPORT_PERIOD);
 	}
 
 	@Override
 	public void close() {
 		tcpServer.disconnect();
 		vocalServer.close();
-		clients.clear();
-		EventManager.unregisterListener(clients);
+		clients.close();
+		dispatcher.clear();
+		EventManager.unregisterListener(dispatcher);
+		router.clear();
+		EventManager.unregisterListener(router);
+		requestMetrics.stopReporting();
+		requestMetrics.unregisterMBean();
+		writers.shutdown();
+		requestExecutor.shutdown();
+		scheduler.shutdownNow();
 	}
 
 	@Override
@@ -148,6 +191,88 @@ public abstract class AbstractMumbleServer implements IMumbleServer {
 		return clients;
 	}
 
+	/**
+	 * @return The dispatcher responsible to forward the server notifications to the clients associated to this server.
+	 */
+	public ClientDispatcher getDispatcher() {
+		return dispatcher;
+	}
+
+	/**
+	 * @return The executor used to send pending messages to the clients of this server.
+	 */
+	public Executor getWriters() {
+		return writers;
+	}
+
+	/**
+	 * @return The executor used to run delayed or periodic tasks, such as the deadline of the handshake with the clients or the report
+	 *         of the request metrics. Tasks must be short, they are run one after the other.
+	 */
+	public ScheduledExecutorService getScheduler() {
+		return scheduler;
+	}
+
+	/**
+	 * @return The executor used to process the requests received from the clients of this server.
+	 */
+	public RequestExecutor getRequestExecutor() {
+		return requestExecutor;
+	}
+
+	/**
+	 * @return The router that forwards the data received from the remotes to the clients of this server.
+	 */
+	public InboundRouter getInboundRouter() {
+		return router;
+	}
+
+	/**
+	 * @return The registry of the time spent to answer the requests received by this server and of their outcome.
+	 */
+	public RequestMetrics getRequestMetrics() {
+		return requestMetrics;
+	}
+
+	/**
+	 * @return The maximum number of notifications that can be pending for one client.
+	 */
+	public int getOutboundCapacity() {
+		return outboundCapacity;
+	}
+
+	/**
+	 * Set the maximum number of notifications that can be pending for one client. It only applies to the clients connected after the
+	 * call to this method.
+	 * 
+	 * @param outboundCapacity The maximum number of pending notifications.
+	 * 
+	 * @throws IllegalArgumentException If the capacity is not strictly positive.
+	 */
+	public void setOutboundCapacity(int outboundCapacity) {
+		if (outboundCapacity <= 0)
+			throw new IllegalArgumentException("The outbound capacity must be strictly positive");
+
+		this.outboundCapacity = outboundCapacity;
+	}
+
+	/**
+	 * @return The behavior when a notification is sent to a client whose the pending notifications queue is full.
+	 */
+	public OverflowPolicy getOverflowPolicy() {
+		return overflowPolicy;
+	}
+
+	/**
+	 * Set the behavior when a notification is sent to a client whose the pending notifications queue is full. It only applies to the
+	 * clients connected after the call to this method.
+	 * 
+	 * @param overflowPolicy The new overflow policy.
+	 */
+	public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+		this.overflowPolicy = overflowPolicy;
+	}
+
 	/**
 	 * @return The TCP server on which configuration request are sent.
 	 */
@@ -155,6 +280,26 @@ public abstract class AbstractMumbleServer implements IMumbleServer {
 		return tcpServer;
 	}
 
+	/**
+	 * Creates the executor used to send pending messages to the clients. Each connection has at most one pending task, the number of
+	 * threads is bounded so that many slow clients cannot create as many threads, and idle threads are released.
+	 * 
+	 * @param name The server name.
+	 * 
+	 * @return The executor used to send pending messages to the clients.
+	 */
+	private ExecutorService createWriters(String name) {
+		int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+		AtomicInteger index = new AtomicInteger();
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), runnable -> {
+			Thread thread = new Thread(runnable, String.format("%s_%s_%s", name, WRITER, index.incrementAndGet()));
+			thread.setDaemon(true);
+			return thread;
+		});
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+
 	private void registerModifiers() {
 		SoundManager.add(new LinearCircularSoundModifier());
 	}
@@ -1,15 +1,15 @@
 package fr.pederobien.mumble.server.impl;
 
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.Set;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 import java.util.stream.Stream;
 
 import fr.pederobien.mumble.server.event.MumbleChannelNameChangePostEvent;
@@ -22,19 +22,28 @@ import fr.pederobien.mumble.server.exceptions.SoundModifierDoesNotExistException
 import fr.pederobien.mumble.server.interfaces.IChannel;
 import fr.pederobien.mumble.server.interfaces.IChannelList;
 import fr.pederobien.mumble.server.interfaces.IMumbleServer;
+import fr.pederobien.mumble.server.interfaces.IPlayer;
 import fr.pederobien.mumble.server.interfaces.ISoundModifier;
 import fr.pederobien.utils.event.EventHandler;
 import fr.pederobien.utils.event.EventManager;
 import fr.pederobien.utils.event.IEventListener;
+import fr.pederobien.vocal.server.event.VocalPlayerSpeakEvent;
 
 public class ChannelList implements IChannelList, IEventListener {
 	private IMumbleServer server;
-	private Map<String, IChannel> channels;
+	private volatile Map<String, IChannel> channels;
 	private Lock lock;
 
+	/**
+	 * Creates a channel list associated to the given server. The channels are stored in an immutable map that is copied and
+	 * republished on each modification, channels being rarely added or removed, so that reading this list never requires a lock nor a
+	 * copy.
+	 * 
+	 * @param server The server to which this list is attached.
+	 */
 	public ChannelList(IMumbleServer server) {
 		this.server = server;
-		channels = new LinkedHashMap<String, IChannel>();
+		channels = Collections.emptyMap();
 		lock = new ReentrantLock(true);
 
 		EventManager.registerListener(this);
@@ -64,7 +73,7 @@ public class ChannelList implements IChannelList, IEventListener {
 
 			IChannel channel = new Channel(server, channelName, optSoundModifier.get());
 			MumbleServerChannelAddPreEvent preEvent = new MumbleServerChannelAddPreEvent(server, channelName, soundModifierName);
-			Runnable update = () -> channels.put(channel.getName(), channel);
+			Runnable update = () -> modify(map -> map.put(channel.getName(), channel));
 			EventManager.callEvent(preEvent, update, new MumbleServerChannelAddPostEvent(server, channel));
 			return channel;
 		} finally {
@@ -82,7 +91,7 @@ public class ChannelList implements IChannelList, IEventListener {
 
 			IChannel channel = optChannel.get();
 			Runnable update = () -> {
-				channels.remove(name);
+				modify(map -> map.remove(name));
 				channel.getPlayers().clear();
 			};
 			EventManager.callEvent(new MumbleServerChannelRemovePreEvent(server, channel), update, new MumbleServerChannelRemovePostEvent(server, channel));
@@ -101,9 +110,9 @@ public class ChannelList implements IChannelList, IEventListener {
 	public void clear() {
 		lock.lock();
 		try {
-			Set<String> names = new HashSet<String>(channels.keySet());
-			for (String name : names) {
-				IChannel channel = channels.remove(name);
+			Map<String, IChannel> removed = channels;
+			channels = Collections.emptyMap();
+			for (IChannel channel : removed.values()) {
 				channel.getPlayers().clear();
 				EventManager.callEvent(new MumbleServerChannelRemovePostEvent(server, channel));
 			}
@@ -139,10 +148,38 @@ public class ChannelList implements IChannelList, IEventListener {
 
 		lock.lock();
 		try {
-			channels.remove(event.getOldName());
-			channels.put(event.getChannel().getName(), event.getChannel());
+			modify(map -> {
+				map.remove(event.getOldName());
+				map.put(event.getChannel().getName(), event.getChannel());
+			});
 		} finally {
 			lock.unlock();
 		}
 	}
+
+	@EventHandler
+	private void onPlayerSpeak(VocalPlayerSpeakEvent event) {
+		Optional<IPlayer> optPlayer = server.getPlayers().get(event.getTransmitter().getName());
+
+		// The vocal player may belong to the vocal server of another mumble server
+		if (!optPlayer.isPresent() || ((Player) optPlayer.get()).getVocalPlayer() != event.getTransmitter())
+			return;
+
+		// Only the channel of the transmitter computes the volumes
+		IChannel channel = optPlayer.get().getChannel();
+		if (channel != null && channel.getPlayers() instanceof ChannelPlayerList)
+			((ChannelPlayerList) channel.getPlayers()).onPlayerSpeak(event, optPlayer.get());
+	}
+
+	/**
+	 * Applies the given modification to a copy of the current channels and publishes the copy. Not thread safe, must be called under
+	 * the lock.
+	 * 
+	 * @param modification The modification to apply.
+	 */
+	private void modify(Consumer<Map<String, IChannel>> modification) {
+		Map<String, IChannel> copy = new LinkedHashMap<String, IChannel>(channels);
+		modification.accept(copy);
+		channels = Collections.unmodifiableMap(copy);
+	}
 }
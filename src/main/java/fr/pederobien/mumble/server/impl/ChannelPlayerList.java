@@ -1,6 +1,9 @@
 package fr.pederobien.mumble.server.impl;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
@@ -10,8 +13,13 @@ import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
 import java.util.stream.Stream;
 
+import fr.pederobien.mumble.server.event.MumbleChannelSoundModifierChangePostEvent;
+import fr.pederobien.mumble.server.event.MumbleParameterMaxValueChangePostEvent;
+import fr.pederobien.mumble.server.event.MumbleParameterMinValueChangePostEvent;
+import fr.pederobien.mumble.server.event.MumbleParameterValueChangePostEvent;
 import fr.pederobien.mumble.server.event.MumblePlayerKickPostEvent;
 import fr.pederobien.mumble.server.event.MumblePlayerListPlayerAddPostEvent;
 import fr.pederobien.mumble.server.event.MumblePlayerListPlayerAddPreEvent;
@@ -23,17 +31,27 @@ import fr.pederobien.mumble.server.event.MumbleServerChannelRemovePostEvent;
 import fr.pederobien.mumble.server.event.MumbleServerClosePostEvent;
 import fr.pederobien.mumble.server.exceptions.PlayerAlreadyRegisteredException;
 import fr.pederobien.mumble.server.exceptions.PlayerMumbleClientNotJoinedException;
+import fr.pederobien.mumble.server.impl.modifiers.SoundModifier;
 import fr.pederobien.mumble.server.interfaces.IChannel;
 import fr.pederobien.mumble.server.interfaces.IChannelPlayerList;
+import fr.pederobien.mumble.server.interfaces.IParameter;
 import fr.pederobien.mumble.server.interfaces.IPlayer;
+import fr.pederobien.mumble.server.interfaces.ISoundModifier;
 import fr.pederobien.utils.event.EventHandler;
 import fr.pederobien.utils.event.EventManager;
 import fr.pederobien.utils.event.IEventListener;
+import fr.pederobien.vocal.common.impl.VolumeResult;
 import fr.pederobien.vocal.server.event.VocalPlayerSpeakEvent;
 
 public class ChannelPlayerList implements IChannelPlayerList, IEventListener {
+	private static final ThreadLocal<Batch> BATCHES = ThreadLocal.withInitial(() -> new Batch());
+	private static final Snapshot EMPTY = new Snapshot(new IPlayer[0], Collections.emptyMap());
 	private IChannel channel;
 	private Map<String, IPlayer> players;
+	private volatile Snapshot snapshot;
+	private VolumeCache volumes;
+	private SpatialGrid grid;
+	private PositionStore store;
 	private Lock lock;
 
 	/**
@@ -44,6 +62,10 @@ public class ChannelPlayerList implements IChannelPlayerList, IEventListener {
 	public ChannelPlayerList(IChannel channel) {
 		this.channel = channel;
 		players = new LinkedHashMap<String, IPlayer>();
+		snapshot = EMPTY;
+		volumes = new VolumeCache();
+		grid = new SpatialGrid();
+		store = new PositionStore();
 		lock = new ReentrantLock(true);
 
 		EventManager.registerListener(this);
@@ -51,7 +73,7 @@ public class ChannelPlayerList implements IChannelPlayerList, IEventListener {
 
 	@Override
 	public Iterator<IPlayer> iterator() {
-		return players.values().iterator();
+		return Arrays.asList(snapshot.players).iterator();
 	}
 
 	@Override
@@ -78,7 +100,12 @@ public class ChannelPlayerList implements IChannelPlayerList, IEventListener {
 			if (optClient.isPresent() && !optClient.get().isJoined())
 				throw new PlayerMumbleClientNotJoinedException(player);
 
-			Runnable update = () -> players.put(player.getName(), player);
+			Runnable update = () -> {
+				players.put(player.getName(), player);
+				publish();
+				grid.add(player);
+				store.add(player);
+			};
 			EventManager.callEvent(new MumblePlayerListPlayerAddPreEvent(this, player), update, new MumblePlayerListPlayerAddPostEvent(this, player));
 		} finally {
 			lock.unlock();
@@ -105,8 +132,14 @@ public class ChannelPlayerList implements IChannelPlayerList, IEventListener {
 		lock.lock();
 		try {
 			Set<String> names = new HashSet<String>(players.keySet());
-			for (String name : names)
-				EventManager.callEvent(new MumblePlayerListPlayerRemovePostEvent(this, players.remove(name)));
+			for (String name : names) {
+				IPlayer player = players.remove(name);
+				publish();
+				EventManager.callEvent(new MumblePlayerListPlayerRemovePostEvent(this, player));
+			}
+			volumes.clear();
+			grid.clear();
+			store.clear();
 		} finally {
 			lock.unlock();
 		}
@@ -114,17 +147,17 @@ public class ChannelPlayerList implements IChannelPlayerList, IEventListener {
 
 	@Override
 	public Optional<IPlayer> get(String name) {
-		return Optional.ofNullable(players.get(name));
+		return Optional.ofNullable(snapshot.names.get(name));
 	}
 
 	@Override
 	public Stream<IPlayer> stream() {
-		return players.values().stream();
+		return Arrays.stream(snapshot.players);
 	}
 
 	@Override
 	public List<IPlayer> toList() {
-		return new ArrayList<IPlayer>(players.values());
+		return new ArrayList<IPlayer>(Arrays.asList(snapshot.players));
 	}
 
 	@EventHandler
@@ -141,35 +174,31 @@ public class ChannelPlayerList implements IChannelPlayerList, IEventListener {
 		try {
 			players.remove(event.getOldName());
 			players.put(event.getPlayer().getName(), event.getPlayer());
+			publish();
 		} finally {
 			lock.unlock();
 		}
 	}
 
 	@EventHandler
-	private void onPlayerSpeak(VocalPlayerSpeakEvent event) {
-		Optional<IPlayer> optPlayer = get(event.getTransmitter().getName());
-		if (!optPlayer.isPresent())
-			return;
-
-		Iterator<IPlayer> iterator;
-		lock.lock();
-		try {
-			iterator = toList().iterator();
-		} finally {
-			lock.unlock();
-		}
+	private void onParameterValueChange(MumbleParameterValueChangePostEvent event) {
+		invalidateIfAttached(event.getParameter());
+	}
 
-		while (iterator.hasNext()) {
-			IPlayer receiver = iterator.next();
+	@EventHandler
+	private void onParameterMinValueChange(MumbleParameterMinValueChangePostEvent event) {
+		invalidateIfAttached(event.getParameter());
+	}
 
-			// No need to send data to the player if he is deafen.
-			// No need to send data to the player if the player is muted by the receiver
-			if (receiver.isDeafen() || ((Player) optPlayer.get()).isMuteBy(receiver))
-				return;
+	@EventHandler
+	private void onParameterMaxValueChange(MumbleParameterMaxValueChangePostEvent event) {
+		invalidateIfAttached(event.getParameter());
+	}
 
-			event.getVolumes().put(event.getPlayers().get(optPlayer.get().getName()), channel.getSoundModifier().calculate(optPlayer.get(), receiver));
-		}
+	@EventHandler
+	private void onSoundModifierChange(MumbleChannelSoundModifierChangePostEvent event) {
+		if (event.getChannel() == channel)
+			volumes.invalidate();
 	}
 
 	@EventHandler
@@ -180,9 +209,14 @@ public class ChannelPlayerList implements IChannelPlayerList, IEventListener {
 		lock.lock();
 		try {
 			players.remove(event.getPlayer().getName());
+			publish();
 		} finally {
 			lock.unlock();
 		}
+		grid.remove(event.getPlayer());
+		store.remove(event.getPlayer());
+		volumes.remove(event.getPlayer());
+		volumes.invalidate();
 	}
 
 	@EventHandler
@@ -210,6 +244,131 @@ public class ChannelPlayerList implements IChannelPlayerList, IEventListener {
 		EventManager.unregisterListener(this);
 	}
 
+	/**
+	 * Computes the volume of the sample sent by the transmitter to each player of this list. Called by the channel list of the server
+	 * so that only the channel of the transmitter handles the event. The volumes are put in the event with the receiver as key. A
+	 * receiver that is deafened, or that has muted the transmitter, is skipped and the other receivers are still handled. A receiver
+	 * beyond the audible range of the sound modifier has no entry in the event.
+	 * 
+	 * @param event       The event that contains the volumes of each receiver.
+	 * @param transmitter The player currently speaking.
+	 */
+	protected void onPlayerSpeak(VocalPlayerSpeakEvent event, IPlayer transmitter) {
+		onPlayerSpeak(transmitter, (receiver, volume) -> event.getVolumes().put(event.getPlayers().get(receiver.getName()), volume));
+	}
+
+	/**
+	 * Computes the volume of the sample sent by the transmitter to each player of this list and gives each volume to the specified
+	 * action, with the same semantics as {@link #onPlayerSpeak(VocalPlayerSpeakEvent, IPlayer)}.
+	 * 
+	 * @param transmitter The player currently speaking.
+	 * @param action      The action that receives the volume of each receiver.
+	 */
+	protected void onPlayerSpeak(IPlayer transmitter, BiConsumer<IPlayer, VolumeResult> action) {
+		Snapshot current = snapshot;
+		if (current.names.get(transmitter.getName()) != transmitter)
+			return;
+
+		ISoundModifier soundModifier = channel.getSoundModifier();
+		double range = soundModifier.getAudibleRange();
+		Batch batch = BATCHES.get();
+
+		try {
+			// Only the players in the audible range of the transmitter are candidates
+			// Otherwise, the players are read from the last published snapshot, without lock nor copy
+			if (!Double.isInfinite(range))
+				grid.forEach(transmitter.getPosition(), range, receiver -> batch.add(transmitter, receiver));
+			else
+				for (IPlayer receiver : current.players)
+					batch.add(transmitter, receiver);
+
+			speak(action, soundModifier, transmitter, batch);
+		} finally {
+			batch.clear();
+		}
+	}
+
+	/**
+	 * Updates the location of the given player in the spatial index and in the position store of this list. Called by the position of
+	 * the player when its coordinates have changed.
+	 * 
+	 * @param player The player whose the position has changed.
+	 */
+	protected void onPositionChange(IPlayer player) {
+		if (snapshot.names.get(player.getName()) == player) {
+			grid.move(player);
+			store.update(player);
+		}
+	}
+
+	/**
+	 * Computes the volume of the sample sent by the transmitter to each receiver of the batch. The cached volumes are used when they
+	 * are still valid, the other volumes are calculated in one call to the sound modifier.
+	 * 
+	 * @param action        The action that receives the volume of each receiver.
+	 * @param soundModifier The sound modifier of the channel.
+	 * @param transmitter   The player currently speaking.
+	 * @param batch         The receivers of the sample.
+	 */
+	private void speak(BiConsumer<IPlayer, VolumeResult> action, ISoundModifier soundModifier, IPlayer transmitter, Batch batch) {
+		// The revisions are read before the calculation so that a concurrent change invalidates the new entries.
+		long transmitterRevision = VolumeCache.getRevision(transmitter);
+		long modifierRevision = volumes.getRevision();
+		long stamp = store.tryOptimisticRead();
+		int transmitterSlot = store.getSlot(transmitter);
+		boolean isStored = transmitterSlot != -1;
+
+		// Step 1: Using the cached volumes, the other receivers are moved at the beginning of the batch
+		int misses = 0;
+		for (int i = 0; i < batch.size; i++) {
+			IPlayer receiver = batch.receivers[i];
+			long receiverRevision = VolumeCache.getRevision(receiver);
+			VolumeResult volume = volumes.get(transmitter, receiver, transmitterRevision, receiverRevision, modifierRevision);
+			if (volume != null) {
+				action.accept(receiver, volume);
+				continue;
+			}
+
+			batch.receivers[misses] = receiver;
+			batch.revisions[misses] = receiverRevision;
+			batch.slots[misses] = store.getSlot(receiver);
+			isStored &= batch.slots[misses] != -1;
+			misses++;
+		}
+
+		if (misses == 0)
+			return;
+
+		// Step 2: Calculating the missing volumes
+		// The slots may refer to other players if the store has been modified meanwhile, the volumes are then calculated again
+		isStored &= soundModifier instanceof SoundModifier;
+		if (isStored) {
+			((SoundModifier) soundModifier).calculate(store, transmitterSlot, batch.slots, misses, batch.volumes);
+			isStored = store.validate(stamp);
+		}
+
+		if (!isStored)
+			for (int i = 0; i < misses; i++)
+				batch.volumes[i] = soundModifier.calculate(transmitter, batch.receivers[i]);
+
+		// Step 3: Updating the cache
+		for (int i = 0; i < misses; i++) {
+			IPlayer receiver = batch.receivers[i];
+			volumes.put(transmitter, receiver, batch.volumes[i], transmitterRevision, batch.revisions[i], modifierRevision);
+			action.accept(receiver, batch.volumes[i]);
+		}
+	}
+
+	/**
+	 * Invalidates the cached volumes if the given parameter belongs to the sound modifier of the channel.
+	 * 
+	 * @param parameter The parameter whose a property has changed.
+	 */
+	private void invalidateIfAttached(IParameter<?> parameter) {
+		if (parameter.getSoundModifier() != null && parameter.getSoundModifier().getChannel() == channel)
+			volumes.invalidate();
+	}
+
 	/**
 	 * Thread safe operation that removes a players from the players list.
 	 * 
@@ -222,13 +381,92 @@ public class ChannelPlayerList implements IChannelPlayerList, IEventListener {
 		boolean removed;
 		try {
 			removed = players.remove(player.getName()) != null;
+			if (removed)
+				publish();
 		} finally {
 			lock.unlock();
 		}
 
-		if (removed)
+		if (removed) {
+			grid.remove(player);
+			store.remove(player);
+			volumes.remove(player);
+			volumes.invalidate();
 			EventManager.callEvent(new MumblePlayerListPlayerRemovePostEvent(this, player));
+		}
 
 		return removed;
 	}
+
+	/**
+	 * Publishes an immutable copy of the registered players, read by the speak path, the lookup and the iteration methods without
+	 * lock. Not thread safe, must be called under the lock each time the players map changes.
+	 */
+	private void publish() {
+		snapshot = new Snapshot(players.values().toArray(new IPlayer[players.size()]), new HashMap<String, IPlayer>(players));
+	}
+
+	/**
+	 * Immutable view on the registered players, in the registration order and by name. The players map is only read and written
+	 * under the lock.
+	 */
+	private static class Snapshot {
+		private IPlayer[] players;
+		private Map<String, IPlayer> names;
+
+		private Snapshot(IPlayer[] players, Map<String, IPlayer> names) {
+			this.players = players;
+			this.names = names;
+		}
+	}
+
+	/**
+	 * Reusable arrays used to compute the volumes of the receivers of one sample, one instance per thread.
+	 */
+	private static class Batch {
+		private IPlayer[] receivers;
+		private int[] slots;
+		private long[] revisions;
+		private VolumeResult[] volumes;
+		private int size;
+
+		private Batch() {
+			receivers = new IPlayer[16];
+			slots = new int[16];
+			revisions = new long[16];
+			volumes = new VolumeResult[16];
+		}
+
+		/**
+		 * Adds the receiver to this batch if it should receive the sample of the transmitter.
+		 * 
+		 * @param transmitter The player currently speaking.
+		 * @param receiver    The player currently hearing.
+		 */
+		private void add(IPlayer transmitter, IPlayer receiver) {
+			// No need to send data to the player if he is deafen.
+			// No need to send data to the player if the player is muted by the receiver
+			if (receiver.isDeafen() || ((Player) transmitter).isMuteBy(receiver))
+				return;
+
+			if (size == receivers.length) {
+				int capacity = receivers.length * 2;
+				receivers = Arrays.copyOf(receivers, capacity);
+				slots = Arrays.copyOf(slots, capacity);
+				revisions = Arrays.copyOf(revisions, capacity);
+				volumes = Arrays.copyOf(volumes, capacity);
+			}
+
+			receivers[size++] = receiver;
+		}
+
+		/**
+		 * Removes the references to the players and to the volumes of the last sample.
+		 */
+		private void clear() {
+			Arrays.fill(receivers, 0, size, null);
+			Arrays.fill(volumes, 0, size, null);
+			size = 0;
+		}
+	}
 }
@@ -0,0 +1,306 @@
+package fr.pederobien.mumble.server.impl;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import fr.pederobien.mumble.common.impl.MumbleCallbackMessage;
+import fr.pederobien.mumble.common.impl.MumbleIdentifier;
+import fr.pederobien.mumble.common.interfaces.IMumbleMessage;
+import fr.pederobien.mumble.server.event.MumbleChannelNameChangePostEvent;
+import fr.pederobien.mumble.server.event.MumbleChannelSoundModifierChangePostEvent;
+import fr.pederobien.mumble.server.event.MumbleParameterMaxValueChangePostEvent;
+import fr.pederobien.mumble.server.event.MumbleParameterMinValueChangePostEvent;
+import fr.pederobien.mumble.server.event.MumbleParameterValueChangePostEvent;
+import fr.pederobien.mumble.server.event.MumblePlayerAdminChangePostEvent;
+import fr.pederobien.mumble.server.event.MumblePlayerGameAddressChangePostEvent;
+import fr.pederobien.mumble.server.event.MumblePlayerKickPostEvent;
+import fr.pederobien.mumble.server.event.MumblePlayerListPlayerAddPostEvent;
+import fr.pederobien.mumble.server.event.MumblePlayerListPlayerRemovePostEvent;
+import fr.pederobien.mumble.server.event.MumblePlayerNameChangePostEvent;
+import fr.pederobien.mumble.server.event.MumblePlayerOnlineChangePostEvent;
+import fr.pederobien.mumble.server.event.MumblePlayerPositionChangePostEvent;
+import fr.pederobien.mumble.server.event.MumbleServerChannelAddPostEvent;
+import fr.pederobien.mumble.server.event.MumbleServerChannelRemovePostEvent;
+import fr.pederobien.mumble.server.event.MumbleServerClientRemovePostEvent;
+import fr.pederobien.mumble.server.event.MumbleServerPlayersPositionChangePostEvent;
+import fr.pederobien.mumble.server.interfaces.IChannel;
+import fr.pederobien.mumble.server.interfaces.IParameter;
+import fr.pederobien.mumble.server.interfaces.IPlayer;
+import fr.pederobien.mumble.server.interfaces.IServerRequestManager;
+import fr.pederobien.utils.event.EventHandler;
+import fr.pederobien.utils.event.EventManager;
+import fr.pederobien.utils.event.EventPriority;
+import fr.pederobien.utils.event.IEventListener;
+
+public class ClientDispatcher implements IEventListener {
+	private AbstractMumbleServer server;
+	private Map<UUID, PlayerMumbleClient> clients;
+
+	/**
+	 * Creates a dispatcher responsible to forward the server events to the clients of a mumble server. The dispatcher is the only
+	 * object registered for those events, so that the server filtering is done once per event and player specific events are routed
+	 * directly to the client associated to the player instead of being tested by each client. Notifications sent to every client are
+	 * built once per version of the communication protocol.
+	 *
+	 * @param server The server associated to this dispatcher.
+	 */
+	public ClientDispatcher(AbstractMumbleServer server) {
+		this.server = server;
+		clients = new ConcurrentHashMap<UUID, PlayerMumbleClient>();
+
+		EventManager.registerListener(this);
+	}
+
+	/**
+	 * Register the given client in order to receive the notifications of the server.
+	 *
+	 * @param client The client to register.
+	 */
+	public void register(PlayerMumbleClient client) {
+		clients.put(client.getUUID(), client);
+	}
+
+	/**
+	 * Unregister the given client, it will not receive notifications from the server anymore.
+	 *
+	 * @param client The client to unregister.
+	 */
+	public void unregister(PlayerMumbleClient client) {
+		clients.remove(client.getUUID());
+	}
+
+	/**
+	 * Get the registered client associated to the given player.
+	 *
+	 * @param player The player whose the client should be returned.
+	 *
+	 * @return An optional that contains the registered client of the player if it exists, an empty optional otherwise.
+	 */
+	public Optional<PlayerMumbleClient> get(IPlayer player) {
+		PlayerMumbleClient client = player == null || player.getIdentifier() == null ? null : clients.get(player.getIdentifier());
+		return client == null || !player.equals(client.getPlayer()) ? Optional.empty() : Optional.of(client);
+	}
+
+	/**
+	 * Unregister each client from this dispatcher.
+	 */
+	public void clear() {
+		clients.clear();
+	}
+
+	@EventHandler(priority = EventPriority.HIGHEST)
+	private void onChannelAdded(MumbleServerChannelAddPostEvent event) {
+		if (!event.getServer().equals(server))
+			return;
+
+		broadcast(version -> getRequestManager().onChannelAdd(version, event.getChannel()));
+	}
+
+	@EventHandler(priority = EventPriority.HIGHEST)
+	private void onChannelRemove(MumbleServerChannelRemovePostEvent event) {
+		if (!event.getServer().equals(server))
+			return;
+
+		broadcast(version -> getRequestManager().onChannelRemove(version, event.getChannel()));
+	}
+
+	@EventHandler(priority = EventPriority.HIGHEST)
+	private void onChannelNameChange(MumbleChannelNameChangePostEvent event) {
+		if (!event.getChannel().getServer().equals(server))
+			return;
+
+		broadcast(version -> getRequestManager().onChannelNameChange(version, event.getChannel(), event.getOldName()));
+	}
+
+	@EventHandler(priority = EventPriority.HIGHEST)
+	private void onPlayerNameChange(MumblePlayerNameChangePostEvent event) {
+		if (!event.getPlayer().getServer().equals(server))
+			return;
+
+		broadcast(version -> getRequestManager().onPlayerNameChange(version, event.getOldName(), event.getPlayer().getName()));
+	}
+
+	@EventHandler(priority = EventPriority.HIGHEST)
+	private void onPlayerOnlineChange(MumblePlayerOnlineChangePostEvent event) {
+		if (!event.getPlayer().getServer().equals(server))
+			return;
+
+		get(event.getPlayer()).ifPresent(client -> client.onPlayerOnlineChange(event.getPlayer()));
+	}
+
+	@EventHandler(priority = EventPriority.HIGHEST)
+	private void onPlayerGameAddressChange(MumblePlayerGameAddressChangePostEvent event) {
+		if (!event.getPlayer().getServer().equals(server))
+			return;
+
+		get(event.getPlayer()).ifPresent(client -> client.onPlayerGameAddressChange(event.getPlayer()));
+	}
+
+	@EventHandler(priority = EventPriority.HIGHEST)
+	private void onPlayerAdminChange(MumblePlayerAdminChangePostEvent event) {
+		if (!event.getPlayer().getServer().equals(server))
+			return;
+
+		get(event.getPlayer()).ifPresent(client -> client.onPlayerAdminChange(event.getPlayer()));
+	}
+
+	@EventHandler(priority = EventPriority.HIGHEST)
+	private void onPlayerKick(MumblePlayerKickPostEvent event) {
+		if (!event.getPlayer().getServer().equals(server))
+			return;
+
+		broadcast(version -> getRequestManager().onPlayerKick(version, event.getPlayer(), event.getKickingPlayer()));
+	}
+
+	@EventHandler(priority = EventPriority.HIGHEST)
+	private void onPlayerPositionChange(MumblePlayerPositionChangePostEvent event) {
+		if (!event.getPlayer().getServer().equals(server))
+			return;
+
+		notifyPositionChange(event.getPlayer());
+	}
+
+	@EventHandler(priority = EventPriority.HIGHEST)
+	private void onPlayersPositionChange(MumbleServerPlayersPositionChangePostEvent event) {
+		if (!event.getList().getServer().equals(server))
+			return;
+
+		for (IPlayer player : event.getPlayers())
+			notifyPositionChange(player);
+	}
+
+	@EventHandler(priority = EventPriority.HIGHEST)
+	private void onChannelPlayerAdd(MumblePlayerListPlayerAddPostEvent event) {
+		if (!event.getPlayer().getServer().equals(server))
+			return;
+
+		// The mute status depends on the recipient, at most two messages are built per version.
+		Map<Float, MumbleCallbackMessage> muted = new HashMap<Float, MumbleCallbackMessage>();
+		Map<Float, MumbleCallbackMessage> notMuted = new HashMap<Float, MumbleCallbackMessage>();
+		for (PlayerMumbleClient client : clients.values()) {
+			if (!client.isJoined())
+				continue;
+
+			boolean isMute = event.getPlayer().isMuteBy(client.getPlayer());
+			client.send(encode(isMute ? muted : notMuted, client.getVersion(),
+					version -> getRequestManager().onChannelPlayerAdd(version, event.getList().getChannel(), event.getPlayer(), isMute)));
+		}
+	}
+
+	@EventHandler(priority = EventPriority.HIGHEST)
+	private void onChannelPlayerRemove(MumblePlayerListPlayerRemovePostEvent event) {
+		if (!event.getPlayer().getServer().equals(server))
+			return;
+
+		broadcast(version -> getRequestManager().onChannelPlayerRemove(version, event.getList().getChannel(), event.getPlayer()));
+	}
+
+	@EventHandler(priority = EventPriority.HIGHEST)
+	private void onParameterValueChange(MumbleParameterValueChangePostEvent event) {
+		if (!isFromServer(event.getParameter()))
+			return;
+
+		broadcast(version -> getRequestManager().onParameterValueChange(version, event.getParameter()), OutboundQueue.key(MumbleIdentifier.SET_PARAMETER_VALUE, event.getParameter()));
+	}
+
+	@EventHandler(priority = EventPriority.HIGHEST)
+	private void onParameterMinValueChange(MumbleParameterMinValueChangePostEvent event) {
+		if (!isFromServer(event.getParameter()))
+			return;
+
+		broadcast(version -> getRequestManager().onParameterMinValueChange(version, event.getParameter()), OutboundQueue.key(MumbleIdentifier.SET_PARAMETER_MIN_VALUE, event.getParameter()));
+	}
+
+	@EventHandler(priority = EventPriority.HIGHEST)
+	private void onParameterMaxValueChange(MumbleParameterMaxValueChangePostEvent event) {
+		if (!isFromServer(event.getParameter()))
+			return;
+
+		broadcast(version -> getRequestManager().onParameterMaxValueChange(version, event.getParameter()), OutboundQueue.key(MumbleIdentifier.SET_PARAMETER_MAX_VALUE, event.getParameter()));
+	}
+
+	@EventHandler(priority = EventPriority.HIGHEST)
+	private void onChannelSoundModifierChanged(MumbleChannelSoundModifierChangePostEvent event) {
+		if (!event.getChannel().getServer().equals(server))
+			return;
+
+		broadcast(version -> getRequestManager().onChannelSoundModifierChange(version, event.getChannel()));
+	}
+
+	@EventHandler(priority = EventPriority.LOWEST)
+	private void onClientRemove(MumbleServerClientRemovePostEvent event) {
+		if (!event.getServer().equals(server))
+			return;
+
+		unregister(event.getClient());
+	}
+
+	/**
+	 * Notifies the client of the given player that its position has changed.
+	 * 
+	 * @param player The player whose the position has changed.
+	 */
+	private void notifyPositionChange(IPlayer player) {
+		get(player).ifPresent(client -> client.onPlayerPositionChange(player));
+	}
+
+	/**
+	 * Send the message returned by the given builder to each client that has joined the server. The message is built and serialized
+	 * once per version of the communication protocol, then the same bytes are sent to every client using this version.
+	 * 
+	 * @param builder The function that creates the message to send for a version of the communication protocol.
+	 */
+	private void broadcast(Function<Float, IMumbleMessage> builder) {
+		broadcast(builder, null);
+	}
+
+	/**
+	 * Send the message returned by the given builder to each client that has joined the server. The message is built and serialized
+	 * once per version of the communication protocol, then the same bytes are sent to every client using this version.
+	 * 
+	 * @param builder The function that creates the message to send for a version of the communication protocol.
+	 * @param key     The key used to coalesce the message with the pending notifications of each client.
+	 */
+	private void broadcast(Function<Float, IMumbleMessage> builder, OutboundQueue.Key key) {
+		Map<Float, MumbleCallbackMessage> messages = new HashMap<Float, MumbleCallbackMessage>();
+		for (PlayerMumbleClient client : clients.values())
+			if (client.isJoined())
+				client.send(encode(messages, client.getVersion(), builder), key);
+	}
+
+	/**
+	 * Get the message already serialized for the given version or creates and serializes a new one.
+	 * 
+	 * @param messages The messages already serialized, by version.
+	 * @param version  The version of the communication protocol.
+	 * @param builder  The function that creates the message to send for a version of the communication protocol.
+	 * 
+	 * @return The serialized message to send.
+	 */
+	private MumbleCallbackMessage encode(Map<Float, MumbleCallbackMessage> messages, float version, Function<Float, IMumbleMessage> builder) {
+		MumbleCallbackMessage message = messages.get(version);
+		if (message == null) {
+			message = new MumbleCallbackMessage(builder.apply(version), null, AbstractMumbleConnection.DEFAULT_TIMEOUT);
+			messages.put(version, message);
+		}
+		return message;
+	}
+
+	private IServerRequestManager getRequestManager() {
+		return server.getRequestManager();
+	}
+
+	/**
+	 * @param parameter The parameter to check.
+	 *
+	 * @return True if the sound modifier of the parameter is attached to a channel of this server, false otherwise.
+	 */
+	private boolean isFromServer(IParameter<?> parameter) {
+		IChannel channel = parameter.getSoundModifier() == null ? null : parameter.getSoundModifier().getChannel();
+		return channel != null && channel.getServer().equals(server);
+	}
+}
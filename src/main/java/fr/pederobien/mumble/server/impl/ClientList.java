@@ -2,39 +2,64 @@ package fr.pederobien.mumble.server.impl;
 
 import java.net.InetSocketAddress;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 
 import fr.pederobien.communication.event.NewTcpClientEvent;
 import fr.pederobien.communication.interfaces.ITcpConnection;
 import fr.pederobien.mumble.server.event.MumbleClientDisconnectPostEvent;
+import fr.pederobien.mumble.server.event.MumblePlayerGameAddressChangePostEvent;
+import fr.pederobien.mumble.server.event.MumblePlayerNameChangePostEvent;
+import fr.pederobien.mumble.server.event.MumblePlayerOnlineChangePostEvent;
 import fr.pederobien.mumble.server.event.MumbleServerClientAddPostEvent;
 import fr.pederobien.mumble.server.event.MumbleServerClientAddPostEvent.Origin;
 import fr.pederobien.mumble.server.event.MumbleServerClientRemovePostEvent;
 import fr.pederobien.mumble.server.event.MumbleServerPlayerAddPostEvent;
 import fr.pederobien.mumble.server.event.MumbleServerPlayerRemovePostEvent;
+import fr.pederobien.mumble.server.interfaces.IPlayer;
 import fr.pederobien.utils.event.EventHandler;
 import fr.pederobien.utils.event.EventManager;
 import fr.pederobien.utils.event.EventPriority;
 import fr.pederobien.utils.event.IEventListener;
 
 public class ClientList implements IEventListener {
+	private static final String ASSOCIATION = "Association";
 	private AbstractMumbleServer server;
-	private List<PlayerMumbleClient> clients;
+	private Map<UUID, Entry> clients;
+	private Map<String, PlayerMumbleClient> names;
+	private Map<String, List<PlayerMumbleClient>> hosts;
+	private ExecutorService executor;
 	private Lock lock;
 
 	/**
 	 * Creates a clients list associated to a mumble server. A client is an intermediate object used to gather information about the
-	 * player from the game and the information about the player in mumble.
+	 * player from the game and the information about the player in mumble. The clients are indexed by identifier, by player name and
+	 * by IP address, the indexes are updated each time the name, the game address or the mumble address of a client changes. Once the
+	 * client of a player or of a connection is known, it is associated by the calling thread. If the other clients registered for the
+	 * same IP address have to be asked first, the association is done by a dedicated thread, one association after the other.
 	 * 
 	 * @param server The server associated to this clients list.
 	 */
 	public ClientList(AbstractMumbleServer server) {
 		this.server = server;
-		clients = new ArrayList<PlayerMumbleClient>();
+		clients = new ConcurrentHashMap<UUID, Entry>();
+		names = new ConcurrentHashMap<String, PlayerMumbleClient>();
+		hosts = new ConcurrentHashMap<String, List<PlayerMumbleClient>>();
+		executor = Executors.newSingleThreadExecutor(runnable -> {
+			Thread thread = new Thread(runnable, String.format("%s_%s", server.getName(), ASSOCIATION));
+			thread.setDaemon(true);
+			return thread;
+		});
 		lock = new ReentrantLock(true);
 
 		EventManager.registerListener(this);
@@ -48,10 +73,19 @@ public class ClientList implements IEventListener {
 	 * @return An optional that contains the client associated to the specified name if registered, an empty optional otherwise.
 	 */
 	public Optional<PlayerMumbleClient> get(String name) {
-		for (PlayerMumbleClient client : clients)
-			if (client.getPlayer() != null && client.getPlayer().getName().equals(name))
-				return Optional.of(client);
-		return Optional.empty();
+		return Optional.ofNullable(names.get(name));
+	}
+
+	/**
+	 * Get the client associated to the given identifier.
+	 * 
+	 * @param uuid The client identifier.
+	 * 
+	 * @return An optional that contains the client associated to the specified identifier if registered, an empty optional otherwise.
+	 */
+	public Optional<PlayerMumbleClient> get(UUID uuid) {
+		Entry entry = clients.get(uuid);
+		return entry == null ? Optional.empty() : Optional.of(entry.client);
 	}
 
 	@EventHandler(priority = EventPriority.LOWEST)
@@ -64,9 +98,10 @@ public class ClientList implements IEventListener {
 
 	@EventHandler(priority = EventPriority.LOWEST)
 	private void onClientDisconnected(MumbleClientDisconnectPostEvent event) {
-		if (!clients.contains(event.getClient()))
+		if (!clients.containsKey(event.getClient().getUUID()))
 			return;
 
+		reindex(event.getClient());
 		garbage(event.getClient());
 	}
 
@@ -75,8 +110,17 @@ public class ClientList implements IEventListener {
 		if (!event.getPlayer().getServer().equals(server))
 			return;
 
-		PlayerMumbleClient client = getOrCreateClientByGame(event.getPlayer().getGameAddress());
-		client.setPlayer((Player) event.getPlayer());
+		Player player = (Player) event.getPlayer();
+		associate(getOrCreateClientByGame(player.getGameAddress()), client -> {
+			// The player may have been removed while the clients were answering
+			if (server.getPlayers().get(player.getName()).orElse(null) != player) {
+				garbage(client);
+				return;
+			}
+
+			client.setPlayer(player);
+			reindex(client);
+		});
 	}
 
 	@EventHandler(priority = EventPriority.LOWEST)
@@ -85,21 +129,55 @@ public class ClientList implements IEventListener {
 			return;
 
 		Optional<PlayerMumbleClient> optClient = get(event.getPlayer().getName());
+		if (!optClient.isPresent())
+			return;
+
 		optClient.get().setPlayer(null);
+		reindex(optClient.get());
 		garbage(optClient.get());
 	}
 
+	@EventHandler(priority = EventPriority.LOWEST)
+	private void onPlayerNameChange(MumblePlayerNameChangePostEvent event) {
+		reindex(event.getPlayer(), names.get(event.getOldName()));
+	}
+
+	@EventHandler(priority = EventPriority.LOWEST)
+	private void onPlayerGameAddressChange(MumblePlayerGameAddressChangePostEvent event) {
+		reindex(event.getPlayer(), names.get(event.getPlayer().getName()));
+	}
+
+	@EventHandler(priority = EventPriority.LOWEST)
+	private void onPlayerOnlineChange(MumblePlayerOnlineChangePostEvent event) {
+		reindex(event.getPlayer(), names.get(event.getPlayer().getName()));
+	}
+
 	/**
-	 * Gets or creates a client associated to the socket IP address and set its mumble address.
+	 * Gets or creates a client associated to the socket IP address and set its mumble address. The client is updated once the other
+	 * clients registered for the same IP address have answered, without blocking the calling thread.
 	 * 
 	 * @param socket The socket used to send data to the remote TCP client.
+	 */
+	private void createClient(ITcpConnection connection) {
+		associate(getOrCreateClientByMumble(connection), client -> {
+			client.setTcpConnection(connection);
+			reindex(client);
+		});
+	}
+
+	/**
+	 * Associates the client once it is known. If the client is already known, the association is done by the calling thread before
+	 * this method returns. Otherwise it is done by the association thread once the other clients registered for the same IP address
+	 * have answered.
 	 * 
-	 * @return The client associated to the IP address.
+	 * @param future      The future completed with the client to associate.
+	 * @param association The association to run.
 	 */
-	private PlayerMumbleClient createClient(ITcpConnection connection) {
-		PlayerMumbleClient client = getOrCreateClientByMumble(connection);
-		client.setTcpConnection(connection);
-		return client;
+	private void associate(CompletableFuture<PlayerMumbleClient> future, Consumer<PlayerMumbleClient> association) {
+		if (future.isDone())
+			future.thenAccept(association);
+		else
+			future.thenAcceptAsync(association, executor);
 	}
 
 	/**
@@ -111,27 +189,24 @@ public class ClientList implements IEventListener {
 	 * @param address The client IP address.
 	 * @param port    The client port number.
 	 * 
-	 * @return The client, retrieved or created, associated to the IP address and port number.
+	 * @return A future completed with the client, retrieved or created, associated to the IP address and port number.
 	 */
-	private PlayerMumbleClient getOrCreateClientByGame(InetSocketAddress socketAddress) {
+	private CompletableFuture<PlayerMumbleClient> getOrCreateClientByGame(InetSocketAddress socketAddress) {
 		List<PlayerMumbleClient> list = getClients(socketAddress.getAddress().getHostAddress());
 
 		// No client registered
 		if (list.isEmpty())
-			return createClient(Origin.PLAYER_CONNECTED_IN_GAME, socketAddress);
+			return CompletableFuture.completedFuture(createClient(Origin.PLAYER_CONNECTED_IN_GAME, socketAddress));
 
 		// Case 2: Clients registered
 		for (PlayerMumbleClient client : list) {
 			// The game address or the mumble address correspond exactly to the IP address and port number.
 			if (client.isAssociatedTo(socketAddress.getPort()))
-				return client;
+				return CompletableFuture.completedFuture(client);
 		}
 
-		Optional<PlayerMumbleClient> optClient = new GamePortAnalyzer(list).checkPortByGame(socketAddress.getPort());
-		if (optClient.isPresent())
-			return optClient.get();
-
-		return createClient(Origin.PLAYER_CONNECTED_IN_GAME, socketAddress);
+		return new GamePortAnalyzer(server, list).checkPortByGame(socketAddress.getPort())
+				.thenApplyAsync(optClient -> optClient.orElseGet(() -> createClient(Origin.PLAYER_CONNECTED_IN_GAME, socketAddress)), executor);
 	}
 
 	/**
@@ -142,27 +217,24 @@ public class ClientList implements IEventListener {
 	 * 
 	 * @param socket The socket of the mumble client.
 	 * 
-	 * @return The client, retrieved or created, associated to the given socket.
+	 * @return A future completed with the client, retrieved or created, associated to the given socket.
 	 */
-	private PlayerMumbleClient getOrCreateClientByMumble(ITcpConnection connection) {
+	private CompletableFuture<PlayerMumbleClient> getOrCreateClientByMumble(ITcpConnection connection) {
 		List<PlayerMumbleClient> list = getClients(connection.getAddress().getAddress().getHostAddress());
 
 		// No client registered
 		if (list.isEmpty())
-			return createClient(Origin.PLAYER_CONNECTED_IN_MUMBLE, connection.getAddress());
+			return CompletableFuture.completedFuture(createClient(Origin.PLAYER_CONNECTED_IN_MUMBLE, connection.getAddress()));
 
 		// Case 2: Clients registered
 		for (PlayerMumbleClient client : list) {
 			// The game address or the mumble address correspond exactly to the IP address and port number.
 			if (client.isAssociatedTo(connection.getAddress().getPort()))
-				return client;
+				return CompletableFuture.completedFuture(client);
 		}
 
-		Optional<PlayerMumbleClient> optClient = new GamePortAnalyzer(list).checkPortByMumble(connection);
-		if (optClient.isPresent())
-			return optClient.get();
-
-		return createClient(Origin.PLAYER_CONNECTED_IN_MUMBLE, connection.getAddress());
+		return new GamePortAnalyzer(server, list).checkPortByMumble(connection)
+				.thenApplyAsync(optClient -> optClient.orElseGet(() -> createClient(Origin.PLAYER_CONNECTED_IN_MUMBLE, connection.getAddress())), executor);
 	}
 
 	/**
@@ -170,50 +242,35 @@ public class ClientList implements IEventListener {
 	 */
 	private UUID createUUID() {
 		UUID uuid;
-		if (clients.isEmpty())
+		do {
 			uuid = UUID.randomUUID();
-		else {
-			boolean uuidAlreadyExists = false;
-			do {
-				uuid = UUID.randomUUID();
-				for (PlayerMumbleClient client : clients) {
-					if (client.getUUID().equals(uuid)) {
-						uuidAlreadyExists = true;
-						break;
-					}
-				}
-				if (uuidAlreadyExists)
-					break;
-			} while (uuidAlreadyExists);
-		}
+		} while (clients.containsKey(uuid));
 		return uuid;
 	}
 
 	private PlayerMumbleClient createClient(Origin origin, InetSocketAddress address) {
-		PlayerMumbleClient client = new PlayerMumbleClient(server, createUUID());
-		clients.add(client);
+		PlayerMumbleClient client;
+		lock.lock();
+		try {
+			client = new PlayerMumbleClient(server, createUUID());
+			clients.put(client.getUUID(), new Entry(client));
+		} finally {
+			lock.unlock();
+		}
+
 		EventManager.callEvent(new MumbleServerClientAddPostEvent(server, client, origin, address));
 		return client;
 	}
 
 	/**
-	 * Thread safe operation to get the list of clients associated to the given name.
+	 * Get the list of clients whose the game address or the mumble address is the given IP address.
 	 * 
 	 * @param hostAddress The IP address without the port number
 	 * 
-	 * @return The list of registered clients.
+	 * @return An unmodifiable list of registered clients.
 	 */
 	private List<PlayerMumbleClient> getClients(String hostAddress) {
-		List<PlayerMumbleClient> list = new ArrayList<PlayerMumbleClient>();
-		lock.lock();
-		try {
-			for (PlayerMumbleClient client : clients)
-				if (client.isAssociatedTo(hostAddress))
-					list.add(client);
-		} finally {
-			lock.unlock();
-		}
-		return list;
+		return hosts.getOrDefault(hostAddress, Collections.emptyList());
 	}
 
 	/**
@@ -223,11 +280,23 @@ public class ClientList implements IEventListener {
 		lock.lock();
 		try {
 			clients.clear();
+			names.clear();
+			hosts.clear();
 		} finally {
 			lock.unlock();
 		}
 	}
 
+	/**
+	 * Removes all clients from this list, stops the thread that associates the clients to the players and stops listening to the
+	 * server events.
+	 */
+	public void close() {
+		clear();
+		executor.shutdown();
+		EventManager.unregisterListener(this);
+	}
+
 	/**
 	 * Thread safe operation to remove the given client from the registered clients list.
 	 * 
@@ -237,7 +306,11 @@ public class ClientList implements IEventListener {
 		lock.lock();
 		boolean removed = false;
 		try {
-			removed = clients.remove(client);
+			Entry entry = clients.remove(client.getUUID());
+			if (entry != null) {
+				unindex(entry);
+				removed = true;
+			}
 		} finally {
 			lock.unlock();
 		}
@@ -255,4 +328,103 @@ public class ClientList implements IEventListener {
 		if (client.getPlayer() == null && (client.getTcpConnection() == null || client.getTcpConnection().isDisposed()))
 			removeClient(client);
 	}
+
+	/**
+	 * Updates the indexes of the client associated to the given player.
+	 * 
+	 * @param player The player whose a property has changed.
+	 * @param client The client indexed before the change, may be null.
+	 */
+	private void reindex(IPlayer player, PlayerMumbleClient client) {
+		if (client == null || !player.getServer().equals(server))
+			return;
+
+		reindex(client);
+	}
+
+	/**
+	 * Thread safe operation to update the indexes of the given client according to its current player name, game address and mumble
+	 * address.
+	 * 
+	 * @param client The client to index.
+	 */
+	private void reindex(PlayerMumbleClient client) {
+		lock.lock();
+		try {
+			Entry entry = clients.get(client.getUUID());
+			if (entry == null)
+				return;
+
+			unindex(entry);
+
+			IPlayer player = client.getPlayer();
+			entry.name = player == null ? null : player.getName();
+			entry.gameHost = client.getGameAddress() == null ? null : client.getGameAddress().getAddress().getHostAddress();
+			entry.mumbleHost = client.getMumbleAddress() == null ? null : client.getMumbleAddress().getAddress().getHostAddress();
+
+			if (entry.name != null)
+				names.put(entry.name, client);
+			addHost(entry.gameHost, client);
+			if (entry.mumbleHost != null && !entry.mumbleHost.equals(entry.gameHost))
+				addHost(entry.mumbleHost, client);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Removes the given entry from the name and IP address indexes. Not thread safe.
+	 * 
+	 * @param entry The entry to remove.
+	 */
+	private void unindex(Entry entry) {
+		if (entry.name != null)
+			names.remove(entry.name, entry.client);
+		removeHost(entry.gameHost, entry.client);
+		removeHost(entry.mumbleHost, entry.client);
+	}
+
+	/**
+	 * Publishes a new list of clients for the given IP address, that contains the given client. Not thread safe.
+	 * 
+	 * @param host   The IP address.
+	 * @param client The client to add.
+	 */
+	private void addHost(String host, PlayerMumbleClient client) {
+		if (host == null)
+			return;
+
+		List<PlayerMumbleClient> list = new ArrayList<PlayerMumbleClient>(getClients(host));
+		list.add(client);
+		hosts.put(host, Collections.unmodifiableList(list));
+	}
+
+	/**
+	 * Publishes a new list of clients for the given IP address, that does not contain the given client. Not thread safe.
+	 * 
+	 * @param host   The IP address.
+	 * @param client The client to remove.
+	 */
+	private void removeHost(String host, PlayerMumbleClient client) {
+		if (host == null)
+			return;
+
+		List<PlayerMumbleClient> list = new ArrayList<PlayerMumbleClient>(getClients(host));
+		if (!list.remove(client))
+			return;
+
+		if (list.isEmpty())
+			hosts.remove(host);
+		else
+			hosts.put(host, Collections.unmodifiableList(list));
+	}
+
+	private static class Entry {
+		private PlayerMumbleClient client;
+		private String name, gameHost, mumbleHost;
+
+		private Entry(PlayerMumbleClient client) {
+			this.client = client;
+		}
+	}
 }
@@ -2,175 +2,153 @@ package fr.pederobien.mumble.server.impl;
 
 import java.util.List;
 import java.util.Optional;
-import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.Condition;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
-import java.util.function.Function;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
+import fr.pederobien.communication.ResponseCallbackArgs;
 import fr.pederobien.communication.interfaces.ITcpConnection;
 import fr.pederobien.mumble.common.impl.MumbleCallbackMessage;
+import fr.pederobien.mumble.common.impl.MumbleErrorCode;
+import fr.pederobien.mumble.common.impl.MumbleIdentifier;
 import fr.pederobien.mumble.common.impl.messages.v10.SetGamePortUsedV10;
+import fr.pederobien.mumble.common.interfaces.IMumbleMessage;
+import fr.pederobien.utils.event.EventManager;
+import fr.pederobien.utils.event.LogEvent;
 
 public class GamePortAnalyzer {
+	private static final int REQUEST_TIMEOUT = 3000;
+	private static final int GLOBAL_TIMEOUT = 5000;
+	private AbstractMumbleServer server;
 	private List<PlayerMumbleClient> clients;
-	private PlayerMumbleClient client;
 
 	/**
 	 * Creates a game port analyzer that is responsible to ask each client in the specified list if a specific port is used on client
-	 * side.
-	 * 
+	 * side. The requests are sent simultaneously and the answers are handled by the response callbacks, no thread is blocked while
+	 * waiting for the answers. The time to wait for the answer of a client is adapted to the round trip time measured with it, but is
+	 * never shorter than the time a client needs to check one of its ports.
+	 *
+	 * @param server  The server to which the clients are associated, its scheduler is used for the global timeout of the analysis.
 	 * @param clients The list of clients to check.
 	 */
-	public GamePortAnalyzer(List<PlayerMumbleClient> clients) {
+	public GamePortAnalyzer(AbstractMumbleServer server, List<PlayerMumbleClient> clients) {
+		this.server = server;
 		this.clients = clients;
 	}
 
 	/**
-	 * Send a request to each client in order to check if the given port is used on the client side.
+	 * Send a request to each client in order to check if the given port is used on the client side. Once the result is known, the
+	 * requests not written yet on the connection of their client are withdrawn.
 	 *
 	 * @param port The port to check.
 	 *
-	 * @return An optional that contains the client that use the port to play at the game if registered, an empty optional otherwise.
+	 * @return A future completed with the client that use the port to play at the game as soon as it answers, or with an empty
+	 *         optional if no client uses the port.
 	 */
-	public Optional<PlayerMumbleClient> checkPortByGame(int port) {
-		CountDownLatch countDownLatch = new CountDownLatch(clients.size());
-		for (PlayerMumbleClient client : clients)
-			// Sending simultaneously the request to each client
-			new Thread(() -> singleCheck(client, gamePort -> gamePort.checkPortByGame(port), countDownLatch)).start();
-		try {
-			countDownLatch.await(5000, TimeUnit.MILLISECONDS);
-		} catch (InterruptedException e) {
-			return Optional.empty();
+	public CompletableFuture<Optional<PlayerMumbleClient>> checkPortByGame(int port) {
+		Analysis analysis = new Analysis();
+		OutboundQueue.Key key = OutboundQueue.key(MumbleIdentifier.IS_GAME_PORT_USED, analysis);
+		analysis.getResult().whenComplete((result, error) -> {
+			for (PlayerMumbleClient client : clients)
+				client.cancel(key);
+		});
+
+		for (PlayerMumbleClient client : clients) {
+			int timeout = Math.max(client.getTimeout(), REQUEST_TIMEOUT);
+			client.send(client.createCheckGamePortMessage(port), args -> analysis.onAnswer(client, args), timeout, key);
 		}
-		return Optional.ofNullable(client);
+		return analysis.getResult();
 	}
 
 	/**
 	 * Send a request to each client in order to check if the port associated to the game address of each client is used on the client
-	 * side.
+	 * side. The requests are written directly on the connection, the answers received once the result is known are ignored.
 	 *
 	 * @param connection The connection to use in order to send the request to the client..
 	 *
-	 * @return An optional that contains the client that use the port to play at the game if registered, an empty optional otherwise.
+	 * @return A future completed with the client that use the port to play at the game as soon as it answers, or with an empty
+	 *         optional if no client uses the port.
 	 */
-	public Optional<PlayerMumbleClient> checkPortByMumble(ITcpConnection connection) {
-		CountDownLatch countDownLatch = new CountDownLatch(clients.size());
-		for (PlayerMumbleClient client : clients)
-			// Sending simultaneously the request to each client
-			new Thread(() -> singleCheck(client, gamePort -> gamePort.checkPortByMumble(connection), countDownLatch)).start();
-		try {
-			countDownLatch.await(5000, TimeUnit.MILLISECONDS);
-		} catch (InterruptedException e) {
-			return Optional.empty();
+	public CompletableFuture<Optional<PlayerMumbleClient>> checkPortByMumble(ITcpConnection connection) {
+		Analysis analysis = new Analysis();
+		for (PlayerMumbleClient client : clients) {
+			if (connection == null || client.getGameAddress() == null) {
+				analysis.onAnswer(client, false);
+				continue;
+			}
+
+			Consumer<ResponseCallbackArgs> callback = args -> analysis.onAnswer(client, args);
+			connection.send(new MumbleCallbackMessage(client.createCheckGamePortMessage(client.getGameAddress().getPort()), callback, REQUEST_TIMEOUT));
 		}
-		return Optional.ofNullable(client);
+		return analysis.getResult();
 	}
 
-	private void singleCheck(PlayerMumbleClient client, Function<GamePort, Boolean> function, CountDownLatch countDownLatch) {
-		GamePort gamePort = new GamePort(client);
-		if (function.apply(gamePort))
-			this.client = client;
+	private class Analysis {
+		private CompletableFuture<Optional<PlayerMumbleClient>> result;
+		private AtomicInteger pending;
 
-		// Execution finished, notifying the waiting thread.
-		countDownLatch.countDown();
-	}
+		private Analysis() {
+			result = new CompletableFuture<Optional<PlayerMumbleClient>>();
+			pending = new AtomicInteger(clients.size());
 
-	private class GamePort {
-		private PlayerMumbleClient client;
-		private Lock lock;
-		private Condition received;
-		private boolean isUsed;
+			if (clients.isEmpty()) {
+				result.complete(Optional.empty());
+				return;
+			}
 
-		public GamePort(PlayerMumbleClient client) {
-			this.client = client;
+			try {
+				ScheduledFuture<?> timeout = server.getScheduler().schedule(() -> result.complete(Optional.empty()), GLOBAL_TIMEOUT, TimeUnit.MILLISECONDS);
+				result.whenComplete((client, error) -> timeout.cancel(false));
+			} catch (RejectedExecutionException e) {
+				// The server is closing
+				result.complete(Optional.empty());
+			}
+		}
 
-			lock = new ReentrantLock();
-			received = lock.newCondition();
+		/**
+		 * @return The future completed with the first client whose the port is used.
+		 */
+		public CompletableFuture<Optional<PlayerMumbleClient>> getResult() {
+			return result;
 		}
 
 		/**
-		 * Send synchronously a request to the client in order to check if the port of the specified address is used.
-		 * 
-		 * @param port The port to check.
-		 * 
-		 * @return True if the port is used on the client side, false otherwise.
+		 * Handles the answer of the given client. An error or an unexpected answer is considered as if the port was not used.
+		 *
+		 * @param client The client that answered.
+		 * @param args   The response of the client.
 		 */
-		public boolean checkPortByGame(int port) {
-			// Step 1: Sending the request to the client.
-			client.send(client.createCheckGamePortMessage(port), args -> {
-				if (args.isTimeout())
-					isUsed = false;
-				else {
-					SetGamePortUsedV10 response = (SetGamePortUsedV10) MumbleServerMessageFactory.parse(args.getResponse().getBytes());
-					isUsed = response.isUsed();
-				}
+		private void onAnswer(PlayerMumbleClient client, ResponseCallbackArgs args) {
+			// The analysis is over, the late answers are ignored
+			if (result.isDone())
+				return;
 
-				// Step 3: Signaling an answer has been received.
-				lock.lock();
+			boolean isUsed = false;
+			if (!args.isTimeout()) {
 				try {
-					received.signal();
-				} catch (Exception e) {
-					e.printStackTrace();
-				} finally {
-					lock.unlock();
+					IMumbleMessage answer = MumbleServerMessageFactory.parse(args.getResponse().getBytes());
+					isUsed = answer.getHeader().getErrorCode() == MumbleErrorCode.NONE && ((SetGamePortUsedV10) answer).isUsed();
+				} catch (RuntimeException e) {
+					EventManager.callEvent(new LogEvent("Unexpected answer to IS_GAME_PORT_USED: %s", e.getMessage()));
 				}
-			}, 3000);
-
-			// Step 2: Waiting for an answer.
-			lock.lock();
-			try {
-				received.await();
-			} catch (InterruptedException e) {
-				e.printStackTrace();
-			} finally {
-				lock.unlock();
 			}
-			return isUsed;
+			onAnswer(client, isUsed);
 		}
 
 		/**
-		 * Send a request through the given connection in order to check the game port.
-		 * 
-		 * @param connection The connection used to send request to the client.
-		 * 
-		 * @return True if the game port is used, false otherwise.
+		 * Completes the analysis if the port is used by the given client or if each client has answered.
+		 *
+		 * @param client The client that answered.
+		 * @param isUsed True if the port is used on the client side.
 		 */
-		public boolean checkPortByMumble(ITcpConnection connection) {
-			if (connection == null)
-				return false;
-
-			// Step 1: Sending the request to the client.
-			connection.send(new MumbleCallbackMessage(client.createCheckGamePortMessage(client.getGameAddress().getPort()), args -> {
-				if (args.isTimeout())
-					isUsed = false;
-				else {
-					SetGamePortUsedV10 response = (SetGamePortUsedV10) MumbleServerMessageFactory.parse(args.getResponse().getBytes());
-					isUsed = response.isUsed();
-				}
-
-				// Step 3: Signaling an answer has been received.
-				lock.lock();
-				try {
-					received.signal();
-				} catch (Exception e) {
-					e.printStackTrace();
-				} finally {
-					lock.unlock();
-				}
-			}, 3000));
-
-			// Step 2: Waiting for an answer.
-			lock.lock();
-			try {
-				received.await();
-			} catch (InterruptedException e) {
-				e.printStackTrace();
-			} finally {
-				lock.unlock();
-			}
-			return isUsed;
+		private void onAnswer(PlayerMumbleClient client, boolean isUsed) {
+			if (isUsed)
+				result.complete(Optional.of(client));
+			else if (pending.decrementAndGet() == 0)
+				result.complete(Optional.empty());
 		}
 	}
 }
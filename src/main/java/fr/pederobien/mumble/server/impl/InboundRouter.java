@@ -0,0 +1,105 @@
+package fr.pederobien.mumble.server.impl;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import fr.pederobien.communication.event.ConnectionLostEvent;
+import fr.pederobien.communication.event.UnexpectedDataReceivedEvent;
+import fr.pederobien.communication.interfaces.ITcpConnection;
+import fr.pederobien.mumble.common.interfaces.IMumbleMessage;
+import fr.pederobien.utils.event.EventHandler;
+import fr.pederobien.utils.event.EventManager;
+import fr.pederobien.utils.event.IEventListener;
+import fr.pederobien.utils.event.LogEvent;
+
+public class InboundRouter implements IEventListener {
+	private Map<ITcpConnection, AbstractMumbleConnection> connections;
+	private LongAdder malformed;
+
+	/**
+	 * Creates a router responsible to forward the data received from the remotes to the mumble connection associated to the TCP
+	 * connection. The router is the only object registered for the reception events, so that the owner of a TCP connection is found
+	 * with one lookup instead of being tested by each mumble connection, and the data are parsed only once.
+	 */
+	public InboundRouter() {
+		connections = new ConcurrentHashMap<ITcpConnection, AbstractMumbleConnection>();
+		malformed = new LongAdder();
+
+		EventManager.registerListener(this);
+	}
+
+	/**
+	 * Associates the given mumble connection to the TCP connection, the data received from the TCP connection are given to the mumble
+	 * connection.
+	 *
+	 * @param connection The TCP connection with the remote.
+	 * @param owner      The mumble connection that processes the received data.
+	 */
+	public void register(ITcpConnection connection, AbstractMumbleConnection owner) {
+		connections.put(connection, owner);
+	}
+
+	/**
+	 * Removes the association between the TCP connection and the mumble connection, if it exists.
+	 *
+	 * @param connection The TCP connection with the remote.
+	 * @param owner      The mumble connection that processes the received data.
+	 */
+	public void unregister(ITcpConnection connection, AbstractMumbleConnection owner) {
+		connections.remove(connection, owner);
+	}
+
+	/**
+	 * @return The number of received frames that could not be parsed.
+	 */
+	public long getMalformedCount() {
+		return malformed.sum();
+	}
+
+	/**
+	 * Removes each association between a TCP connection and a mumble connection.
+	 */
+	public void clear() {
+		connections.clear();
+	}
+
+	@EventHandler
+	private void onUnexpectedDataReceived(UnexpectedDataReceivedEvent event) {
+		AbstractMumbleConnection owner = connections.get(event.getConnection());
+		if (owner == null)
+			return;
+
+		IMumbleMessage request;
+		try {
+			request = MumbleServerMessageFactory.parse(event.getBuffer());
+		} catch (Exception e) {
+			onMalformedRequest(event, String.format("%s: %s", e.getClass().getSimpleName(), e.getMessage()));
+			return;
+		}
+
+		if (request == null || request.getHeader() == null) {
+			onMalformedRequest(event, "no header");
+			return;
+		}
+
+		owner.receive(request);
+	}
+
+	@EventHandler
+	private void onConnectionLost(ConnectionLostEvent event) {
+		connections.remove(event.getConnection());
+	}
+
+	/**
+	 * Counts the malformed request and logs the reason why it could not be parsed.
+	 * 
+	 * @param event  The event that contains the malformed request.
+	 * @param reason The reason why the request is malformed.
+	 */
+	private void onMalformedRequest(UnexpectedDataReceivedEvent event, String reason) {
+		malformed.increment();
+		String format = "Malformed request received from %s (%s malformed requests): %s";
+		EventManager.callEvent(new LogEvent(format, event.getConnection().getAddress(), malformed.sum(), reason));
+	}
+}
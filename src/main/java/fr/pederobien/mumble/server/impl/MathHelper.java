@@ -5,6 +5,11 @@ import fr.pederobien.mumble.server.impl.modifiers.Plan;
 import fr.pederobien.mumble.server.interfaces.IPosition;
 
 public class MathHelper {
+	/**
+	 * The number of precomputed cosine values per degree. Between two precomputed values, the cosine is linearly interpolated. The
+	 * interpolation error is bounded by <code>h&sup2; / 8</code>, where <code>h</code> is the step in radian, which gives an absolute
+	 * error less than 6e-7 for the left and right volumes.
+	 */
 	private static final int PRECISION = 8;
 	private static final double[] COS_VALUES = new double[90 * PRECISION + 1];
 
@@ -49,22 +54,97 @@ public class MathHelper {
 	 * @param to   The reference position.
 	 * 
 	 * @return A double array with size 2. The first value correspond to the left volume, the second to the right volume.
+	 * 
+	 * @see #getDefaultLeftAndRightVolume(IPosition, IPosition, double[])
+	 * @see #getPackedLeftAndRightVolume(IPosition, IPosition)
 	 */
 	public static double[] getDefaultLeftAndRightVolume(IPosition from, IPosition to) {
+		return getDefaultLeftAndRightVolume(from, to, new double[2]);
+	}
+
+	/**
+	 * Calculate the left and right volume for a stereo signal according to the given positions, without allocation.
+	 * 
+	 * @param from   The position used to know its yaw with the other position.
+	 * @param to     The reference position.
+	 * @param output A double array with size at least 2, the left volume is written at index 0, the right volume at index 1.
+	 * 
+	 * @return The output array.
+	 */
+	public static double[] getDefaultLeftAndRightVolume(IPosition from, IPosition to, double[] output) {
 		double yaw = getInverseYaw(from, to);
-		// First getting the yaw between 0 and PI/2
-		// Second getting the angle in degrees in order to get the precomputed cosinus value.
-		int index = (int) Math.toDegrees(Math.abs(inRange(yaw, -Math.PI / 2, Math.PI / 2))) * PRECISION;
-
-		double leftVolume = 1.0, rightVolume = 1.0;
-		if (0 <= yaw && yaw < Math.PI) {
-			leftVolume = Math.abs(COS_VALUES[index]);
-			rightVolume += 1 - leftVolume;
-		} else {
-			rightVolume = Math.abs(COS_VALUES[index]);
-			leftVolume += 1 - rightVolume;
-		}
-		return new double[] { leftVolume, rightVolume };
+		output[0] = getLeftVolume(yaw);
+		output[1] = getRightVolume(yaw);
+		return output;
+	}
+
+	/**
+	 * Calculate the left and right volume for a stereo signal according to the given positions, without allocation. Both volumes are
+	 * packed as float in one long, use {@link #getLeft(long)} and {@link #getRight(long)} to unpack them.
+	 * 
+	 * @param from The position used to know its yaw with the other position.
+	 * @param to   The reference position.
+	 * 
+	 * @return The packed left and right volumes.
+	 */
+	public static long getPackedLeftAndRightVolume(IPosition from, IPosition to) {
+		double yaw = getInverseYaw(from, to);
+		return (long) Float.floatToRawIntBits((float) getLeftVolume(yaw)) << 32 | Float.floatToRawIntBits((float) getRightVolume(yaw)) & 0xFFFFFFFFL;
+	}
+
+	/**
+	 * @param volumes The volumes returned by {@link #getPackedLeftAndRightVolume(IPosition, IPosition)}.
+	 * 
+	 * @return The left volume.
+	 */
+	public static double getLeft(long volumes) {
+		return Float.intBitsToFloat((int) (volumes >>> 32));
+	}
+
+	/**
+	 * @param volumes The volumes returned by {@link #getPackedLeftAndRightVolume(IPosition, IPosition)}.
+	 * 
+	 * @return The right volume.
+	 */
+	public static double getRight(long volumes) {
+		return Float.intBitsToFloat((int) volumes);
+	}
+
+	/**
+	 * Calculate the yaw between the direction given by the coordinates differences and the orientation of a player.
+	 * 
+	 * @param dx  The difference on the X axis between the player and the reference position.
+	 * @param dy  The difference on the Y axis between the player and the reference position.
+	 * @param yaw The yaw angle of the player.
+	 * 
+	 * @return The yaw in radian, in range -<i>pi</i> and <i>pi</i>.
+	 */
+	public static double getYaw(double dx, double dy, double yaw) {
+		return inRange(Math.atan2(dy, dx) - yaw);
+	}
+
+	/**
+	 * Calculate the left volume for a stereo signal according to the yaw between two players.
+	 * 
+	 * @param yaw The yaw in radian, in range -<i>pi</i> and <i>pi</i>.
+	 * 
+	 * @return The left volume.
+	 */
+	public static double getLeftVolume(double yaw) {
+		double cos = getCosine(yaw);
+		return 0 <= yaw && yaw < Math.PI ? cos : 2 - cos;
+	}
+
+	/**
+	 * Calculate the right volume for a stereo signal according to the yaw between two players.
+	 * 
+	 * @param yaw The yaw in radian, in range -<i>pi</i> and <i>pi</i>.
+	 * 
+	 * @return The right volume.
+	 */
+	public static double getRightVolume(double yaw) {
+		double cos = getCosine(yaw);
+		return 0 <= yaw && yaw < Math.PI ? 2 - cos : cos;
 	}
 
 	/**
@@ -97,14 +177,35 @@ public class MathHelper {
 	 * @return The distance between the two positions.
 	 */
 	public static double getDistance2D(IPosition from, IPosition to, Plan plan) {
+		return Math.sqrt(getSquaredDistance2D(from, to, plan));
+	}
+
+	/**
+	 * Calculate the squared distance in two dimensions between the two positions. Comparing squared distances avoids a square root.
+	 * 
+	 * @param from The position used to now it distance with the other position.
+	 * @param to   The reference position.
+	 * @param plan The plan on which the calcul is executed.
+	 * 
+	 * @return The squared distance between the two positions.
+	 */
+	public static double getSquaredDistance2D(IPosition from, IPosition to, Plan plan) {
+		double first, second;
 		switch (plan) {
 		case XY:
-			return Math.sqrt(Math.pow(getDistance1D(from, to, Axis.X), 2) + Math.pow(getDistance1D(from, to, Axis.Y), 2));
+			first = to.getX() - from.getX();
+			second = to.getY() - from.getY();
+			break;
 		case XZ:
-			return Math.sqrt(Math.pow(getDistance1D(from, to, Axis.X), 2) + Math.pow(getDistance1D(from, to, Axis.Z), 2));
+			first = to.getX() - from.getX();
+			second = to.getZ() - from.getZ();
+			break;
 		default:
-			return Math.sqrt(Math.pow(getDistance1D(from, to, Axis.Y), 2) + Math.pow(getDistance1D(from, to, Axis.Z), 2));
+			first = to.getY() - from.getY();
+			second = to.getZ() - from.getZ();
+			break;
 		}
+		return first * first + second * second;
 	}
 
 	/**
@@ -116,7 +217,32 @@ public class MathHelper {
 	 * @return The distance between the two positions.
 	 */
 	public static double getDistance3D(IPosition from, IPosition to) {
-		return Math.sqrt(Math.pow(getDistance1D(from, to, Axis.X), 2) + Math.pow(getDistance1D(from, to, Axis.Y), 2) + Math.pow(getDistance1D(from, to, Axis.Z), 2));
+		return Math.sqrt(getSquaredDistance3D(from, to));
+	}
+
+	/**
+	 * Calculate the squared distance in three dimensions between the two positions. Comparing squared distances avoids a square root.
+	 * 
+	 * @param from The position used to now it distance with the other position.
+	 * @param to   The reference position.
+	 * 
+	 * @return The squared distance between the two positions.
+	 */
+	public static double getSquaredDistance3D(IPosition from, IPosition to) {
+		return getSquaredDistance(to.getX() - from.getX(), to.getY() - from.getY(), to.getZ() - from.getZ());
+	}
+
+	/**
+	 * Calculate the squared length of the vector whose the coordinates are given.
+	 * 
+	 * @param dx The difference on the X axis.
+	 * @param dy The difference on the Y axis.
+	 * @param dz The difference on the Z axis.
+	 * 
+	 * @return The squared length of the vector.
+	 */
+	public static double getSquaredDistance(double dx, double dy, double dz) {
+		return dx * dx + dy * dy + dz * dz;
 	}
 
 	/**
@@ -141,7 +267,27 @@ public class MathHelper {
 		return angle > supRange ? angle - (supRange - infRange) : angle < infRange ? angle + (supRange - infRange) : angle;
 	}
 
+	/**
+	 * Get the absolute cosine of the given yaw, once put in range -<i>pi/2</i> and <i>pi/2</i>, interpolated between the two nearest
+	 * precomputed values.
+	 * 
+	 * @param yaw The yaw in radian.
+	 * 
+	 * @return The absolute cosine value.
+	 */
+	private static double getCosine(double yaw) {
+		// First getting the yaw between 0 and PI/2
+		// Second getting the position of the angle in the precomputed cosinus values.
+		double position = Math.toDegrees(Math.abs(inRange(yaw, -Math.PI / 2, Math.PI / 2))) * PRECISION;
+		int index = (int) position;
+		if (index >= COS_VALUES.length - 1)
+			return COS_VALUES[COS_VALUES.length - 1];
+
+		double lower = COS_VALUES[index];
+		return Math.abs(lower + (COS_VALUES[index + 1] - lower) * (position - index));
+	}
+
 	private static double getYaw(IPosition from, IPosition to, double yawPlayer) {
-		return inRange(Math.atan2(getDistance1D(from, to, Axis.Y), getDistance1D(from, to, Axis.X)) - yawPlayer);
+		return getYaw(to.getX() - from.getX(), to.getY() - from.getY(), yawPlayer);
 	}
 }
@@ -0,0 +1,354 @@
+package fr.pederobien.mumble.server.impl;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import fr.pederobien.communication.interfaces.ITcpConnection;
+import fr.pederobien.mumble.common.impl.MumbleCallbackMessage;
+import fr.pederobien.mumble.common.impl.MumbleIdentifier;
+import fr.pederobien.utils.event.EventManager;
+import fr.pederobien.utils.event.LogEvent;
+
+public class OutboundQueue {
+	/**
+	 * The default number of notifications that can be pending for one connection.
+	 */
+	public static final int DEFAULT_CAPACITY = 1024;
+
+	public enum OverflowPolicy {
+		/**
+		 * The oldest pending notification is discarded in order to enqueue the new one.
+		 */
+		DROP_OLDEST,
+
+		/**
+		 * The new notification is discarded.
+		 */
+		DROP_NEWEST,
+
+		/**
+		 * The connection with the remote is disposed.
+		 */
+		DISCONNECT
+	}
+
+	private ITcpConnection connection;
+	private Executor executor;
+	private int capacity;
+	private OverflowPolicy policy;
+	private Deque<Entry> entries;
+	private Map<Key, Entry> pending;
+	private int size, cancelled;
+	private boolean isScheduled, isDisposed;
+	private Lock lock;
+
+	/**
+	 * Creates a queue of messages to send to the remote. The messages are sent by a task run by the given executor, so that the thread
+	 * that enqueue a message is never blocked by a slow remote. Only notifications are taken into account for the capacity, reliable
+	 * messages, the requests that expect an answer and the answers to the requests of the remote, are never discarded.
+	 *
+	 * @param connection The connection used to send messages to the remote.
+	 * @param executor   The executor used to run the task that sends messages to the remote.
+	 * @param capacity   The maximum number of notifications that can be pending.
+	 * @param policy     The behavior when a notification is enqueued while the queue is full.
+	 */
+	public OutboundQueue(ITcpConnection connection, Executor executor, int capacity, OverflowPolicy policy) {
+		this.connection = connection;
+		this.executor = executor;
+		this.capacity = capacity;
+		this.policy = policy;
+
+		entries = new ArrayDeque<Entry>();
+		pending = new HashMap<Key, Entry>();
+		lock = new ReentrantLock(true);
+	}
+
+	/**
+	 * Creates a key used to coalesce notifications. When a notification is enqueued with a key, the pending notification with the
+	 * same key, if it exists, is replaced by the new one. The new notification takes the place of the superseded one in the queue.
+	 *
+	 * @param identifier The identifier of the notification.
+	 * @param target     The object concerned by the notification.
+	 *
+	 * @return The key associated to the identifier and the target.
+	 */
+	public static Key key(MumbleIdentifier identifier, Object target) {
+		return new Key(identifier, target);
+	}
+
+	/**
+	 * Thread safe operation to enqueue a message to send to the remote.
+	 *
+	 * @param message    The message to send.
+	 * @param key        The key used to coalesce the message, null if the message should not be coalesced.
+	 * @param isReliable True if the message expects an answer from the remote or answers a request of the remote, such message is
+	 *                   never discarded.
+	 */
+	public void offer(MumbleCallbackMessage message, Key key, boolean isReliable) {
+		offer(message, key, isReliable, null);
+	}
+
+	/**
+	 * Thread safe operation to enqueue a message to send to the remote.
+	 *
+	 * @param message    The message to send.
+	 * @param key        The key used to coalesce the message, null if the message should not be coalesced.
+	 * @param isReliable True if the message expects an answer from the remote or answers a request of the remote, such message is
+	 *                   never discarded.
+	 * @param onWrite    The action to run just before the message is written on the connection, may be null.
+	 */
+	public void offer(MumbleCallbackMessage message, Key key, boolean isReliable, Runnable onWrite) {
+		boolean schedule = false, disconnect = false;
+
+		lock.lock();
+		try {
+			if (isDisposed)
+				return;
+
+			// Step 1: Replacing the superseded notification in place, so that the order with the other notifications is kept
+			if (key != null) {
+				Entry superseded = pending.get(key);
+				if (superseded != null && superseded.isReliable == isReliable) {
+					superseded.message = message;
+					superseded.onWrite = onWrite;
+					return;
+				}
+				cancel(pending.remove(key));
+			}
+
+			// Step 2: Applying the overflow policy
+			if (!isReliable && size >= capacity) {
+				switch (policy) {
+				case DROP_OLDEST:
+					dropOldest();
+					break;
+				case DROP_NEWEST:
+					return;
+				case DISCONNECT:
+					disconnect = true;
+					break;
+				}
+			}
+
+			if (!disconnect) {
+				Entry entry = new Entry(message, key, isReliable, onWrite);
+				entries.add(entry);
+				if (key != null)
+					pending.put(key, entry);
+				if (!isReliable)
+					size++;
+
+				schedule = !isScheduled;
+				isScheduled = true;
+			}
+		} finally {
+			lock.unlock();
+		}
+
+		if (disconnect) {
+			EventManager.callEvent(new LogEvent("Too many pending notifications for %s, disposing connection ...", connection.getAddress()));
+			dispose();
+			connection.dispose();
+		} else if (schedule)
+			schedule();
+	}
+
+	/**
+	 * Thread safe operation to discard the pending message associated to the given key, if any.
+	 *
+	 * @param key The key of the message to discard.
+	 */
+	public void cancel(Key key) {
+		lock.lock();
+		try {
+			cancel(pending.remove(key));
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Thread safe operation to discard each pending message. Once disposed, the messages sent to this queue are ignored.
+	 */
+	public void dispose() {
+		lock.lock();
+		try {
+			isDisposed = true;
+			entries.clear();
+			pending.clear();
+			size = 0;
+			cancelled = 0;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Thread safe operation to get the number of pending notifications.
+	 * 
+	 * @return The number of pending notifications.
+	 */
+	public int size() {
+		lock.lock();
+		try {
+			return size;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Sends pending messages until the queue is empty. If sending a message throws an error, the queue is scheduled again so that the
+	 * next messages are still sent.
+	 */
+	private void drain() {
+		boolean isOver = false;
+		try {
+			Entry entry;
+			while ((entry = poll()) != null) {
+				if (connection.isDisposed()) {
+					dispose();
+					break;
+				}
+
+				try {
+					if (entry.onWrite != null)
+						entry.onWrite.run();
+					connection.send(entry.message);
+				} catch (RuntimeException e) {
+					EventManager.callEvent(new LogEvent("Error while sending a message to %s: %s", connection.getAddress(), e.getMessage()));
+				}
+			}
+			isOver = true;
+		} finally {
+			if (!isOver)
+				schedule();
+		}
+	}
+
+	/**
+	 * Gives the drain of this queue to a writer. If the executor has been shut down, the pending messages are discarded.
+	 */
+	private void schedule() {
+		try {
+			executor.execute(() -> drain());
+		} catch (RejectedExecutionException e) {
+			// The server is closing
+			dispose();
+		}
+	}
+
+	/**
+	 * Thread safe operation to remove the next message to send.
+	 *
+	 * @return The next message to send, or null if there is no more pending message.
+	 */
+	private Entry poll() {
+		lock.lock();
+		try {
+			Entry entry;
+			while ((entry = entries.poll()) != null && entry.isCancelled)
+				cancelled--;
+
+			if (entry == null) {
+				isScheduled = false;
+				return null;
+			}
+
+			if (entry.key != null)
+				pending.remove(entry.key, entry);
+			if (!entry.isReliable)
+				size--;
+			return entry;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Discards the oldest pending notification. Not thread safe.
+	 */
+	private void dropOldest() {
+		for (Entry entry : entries) {
+			if (!entry.isCancelled && !entry.isReliable) {
+				if (entry.key != null)
+					pending.remove(entry.key, entry);
+				cancel(entry);
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Marks the given entry as cancelled, it will not be sent to the remote. Cancelled entries are removed from the underlying queue
+	 * when they become more numerous than the pending entries. Not thread safe.
+	 *
+	 * @param entry The entry to cancel.
+	 */
+	private void cancel(Entry entry) {
+		if (entry == null || entry.isCancelled)
+			return;
+
+		entry.isCancelled = true;
+		cancelled++;
+		if (!entry.isReliable)
+			size--;
+
+		if (cancelled > entries.size() / 2) {
+			Iterator<Entry> iterator = entries.iterator();
+			while (iterator.hasNext())
+				if (iterator.next().isCancelled)
+					iterator.remove();
+			cancelled = 0;
+		}
+	}
+
+	public static class Key {
+		private MumbleIdentifier identifier;
+		private Object target;
+
+		private Key(MumbleIdentifier identifier, Object target) {
+			this.identifier = identifier;
+			this.target = target;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+
+			if (!(obj instanceof Key))
+				return false;
+
+			Key other = (Key) obj;
+			return identifier == other.identifier && target == other.target;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(identifier, System.identityHashCode(target));
+		}
+	}
+
+	private static class Entry {
+		private MumbleCallbackMessage message;
+		private Key key;
+		private boolean isReliable, isCancelled;
+		private Runnable onWrite;
+
+		private Entry(MumbleCallbackMessage message, Key key, boolean isReliable, Runnable onWrite) {
+			this.message = message;
+			this.key = key;
+			this.isReliable = isReliable;
+			this.onWrite = onWrite;
+		}
+	}
+}
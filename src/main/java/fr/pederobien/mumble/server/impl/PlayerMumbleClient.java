@@ -5,35 +5,17 @@ import java.util.UUID;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import fr.pederobien.communication.event.ConnectionLostEvent;
-import fr.pederobien.communication.event.UnexpectedDataReceivedEvent;
 import fr.pederobien.communication.interfaces.ITcpConnection;
 import fr.pederobien.mumble.common.impl.MumbleIdentifier;
 import fr.pederobien.mumble.common.impl.MumbleErrorCode;
 import fr.pederobien.mumble.common.interfaces.IMumbleMessage;
-import fr.pederobien.mumble.server.event.MumbleChannelNameChangePostEvent;
-import fr.pederobien.mumble.server.event.MumbleChannelSoundModifierChangePostEvent;
 import fr.pederobien.mumble.server.event.MumbleClientDisconnectPostEvent;
-import fr.pederobien.mumble.server.event.MumbleParameterMaxValueChangePostEvent;
-import fr.pederobien.mumble.server.event.MumbleParameterMinValueChangePostEvent;
-import fr.pederobien.mumble.server.event.MumbleParameterValueChangePostEvent;
-import fr.pederobien.mumble.server.event.MumblePlayerAdminChangePostEvent;
-import fr.pederobien.mumble.server.event.MumblePlayerGameAddressChangePostEvent;
-import fr.pederobien.mumble.server.event.MumblePlayerKickPostEvent;
-import fr.pederobien.mumble.server.event.MumblePlayerListPlayerAddPostEvent;
-import fr.pederobien.mumble.server.event.MumblePlayerListPlayerRemovePostEvent;
-import fr.pederobien.mumble.server.event.MumblePlayerNameChangePostEvent;
-import fr.pederobien.mumble.server.event.MumblePlayerOnlineChangePostEvent;
-import fr.pederobien.mumble.server.event.MumblePlayerPositionChangePostEvent;
-import fr.pederobien.mumble.server.event.MumbleServerChannelAddPostEvent;
-import fr.pederobien.mumble.server.event.MumbleServerChannelRemovePostEvent;
 import fr.pederobien.mumble.server.event.MumbleServerClientJoinPostEvent;
 import fr.pederobien.mumble.server.event.MumbleServerClientLeavePostEvent;
 import fr.pederobien.mumble.server.event.MumbleServerClosePostEvent;
-import fr.pederobien.mumble.server.interfaces.IMumbleServer;
 import fr.pederobien.mumble.server.interfaces.IPlayer;
 import fr.pederobien.utils.event.EventHandler;
 import fr.pederobien.utils.event.EventManager;
-import fr.pederobien.utils.event.EventPriority;
 import fr.pederobien.utils.event.IEventListener;
 
 public class PlayerMumbleClient extends AbstractMumbleConnection implements IEventListener {
@@ -47,7 +29,7 @@ public class PlayerMumbleClient extends AbstractMumbleConnection implements IEve
 	 * @param server The server associated to this client.
 	 * @param uuid   The client unique identifier.
 	 */
-	protected PlayerMumbleClient(IMumbleServer server, UUID uuid) {
+	protected PlayerMumbleClient(AbstractMumbleServer server, UUID uuid) {
 		super(server, null);
 		this.uuid = uuid;
 
@@ -105,8 +87,14 @@ public class PlayerMumbleClient extends AbstractMumbleConnection implements IEve
 	protected void setTcpConnection(ITcpConnection connection) {
 		super.setTcpConnection(connection);
 
-		if (establishCommunicationProtocolVersion() && isRegistered.compareAndSet(false, true))
+		if (isRegistered.compareAndSet(false, true))
 			EventManager.registerListener(this);
+		startHandshake();
+	}
+
+	@Override
+	protected void onHandshakeEstablished() {
+		getMumbleServer().getDispatcher().register(this);
 	}
 
 	/**
@@ -162,140 +150,52 @@ public class PlayerMumbleClient extends AbstractMumbleConnection implements IEve
 		return getServer().getRequestManager().onGamePortCheck(1.0f, gamePort);
 	}
 
-	@EventHandler(priority = EventPriority.HIGHEST)
-	private void onChannelAdded(MumbleServerChannelAddPostEvent event) {
-		if (!event.getServer().equals(getServer()))
-			return;
-
-		doIfPlayerJoined(() -> send(getServer().getRequestManager().onChannelAdd(getVersion(), event.getChannel())));
-	}
-
-	@EventHandler(priority = EventPriority.HIGHEST)
-	private void onChannelRemove(MumbleServerChannelRemovePostEvent event) {
-		if (!event.getServer().equals(getServer()))
-			return;
-
-		doIfPlayerJoined(() -> send(getServer().getRequestManager().onChannelRemove(getVersion(), event.getChannel())));
-	}
-
-	@EventHandler(priority = EventPriority.HIGHEST)
-	private void onChannelNameChange(MumbleChannelNameChangePostEvent event) {
-		if (!event.getChannel().getServer().equals(getServer()))
-			return;
-
-		doIfPlayerJoined(() -> send(getServer().getRequestManager().onChannelNameChange(getVersion(), event.getChannel(), event.getOldName())));
-	}
-
-	@EventHandler(priority = EventPriority.HIGHEST)
-	private void onPlayerNameChange(MumblePlayerNameChangePostEvent event) {
-		if (!event.getPlayer().getServer().equals(getServer()))
-			return;
-
-		doIfPlayerJoined(() -> send(getServer().getRequestManager().onPlayerNameChange(getVersion(), event.getOldName(), event.getPlayer().getName())));
-	}
-
-	@EventHandler(priority = EventPriority.HIGHEST)
-	private void onPlayerOnlineChange(MumblePlayerOnlineChangePostEvent event) {
-		if (!event.getPlayer().getServer().equals(getServer()) || !event.getPlayer().equals(player))
-			return;
-
-		doIfPlayerJoined(() -> send(getServer().getRequestManager().onPlayerOnlineChange(getVersion(), event.getPlayer())));
-	}
-
-	@EventHandler(priority = EventPriority.HIGHEST)
-	private void onPlayerGameAddressChange(MumblePlayerGameAddressChangePostEvent event) {
-		if (!event.getPlayer().getServer().equals(getServer()) || !event.getPlayer().equals(player))
-			return;
-
-		send(getServer().getRequestManager().onPlayerGameAddressChange(getVersion(), event.getPlayer()));
-	}
-
-	@EventHandler(priority = EventPriority.HIGHEST)
-	private void onPlayerAdminChange(MumblePlayerAdminChangePostEvent event) {
-		if (!event.getPlayer().getServer().equals(getServer()) || !event.getPlayer().equals(player))
-			return;
-
-		doIfPlayerJoined(() -> send(getServer().getRequestManager().onPlayerAdminChange(getVersion(), event.getPlayer())));
-	}
-
-	@EventHandler(priority = EventPriority.HIGHEST)
-	private void onPlayerKick(MumblePlayerKickPostEvent event) {
-		if (!event.getPlayer().getServer().equals(getServer()))
-			return;
-
-		doIfPlayerJoined(() -> send(getServer().getRequestManager().onPlayerKick(getVersion(), event.getPlayer(), event.getKickingPlayer())));
-	}
-
-	@EventHandler(priority = EventPriority.HIGHEST)
-	private void onPlayerPositionChange(MumblePlayerPositionChangePostEvent event) {
-		if (!event.getPlayer().getServer().equals(getServer()) || !event.getPlayer().equals(player))
-			return;
-
-		doIfPlayerJoined(() -> send(getServer().getRequestManager().onPlayerPositionChange(getVersion(), event.getPlayer())));
-	}
-
-	@EventHandler(priority = EventPriority.HIGHEST)
-	private void onChannelPlayerAdd(MumblePlayerListPlayerAddPostEvent event) {
-		if (!event.getPlayer().getServer().equals(getServer()))
-			return;
-
-		boolean isMute = event.getPlayer().isMuteBy(player);
-		doIfPlayerJoined(() -> send(getServer().getRequestManager().onChannelPlayerAdd(getVersion(), event.getList().getChannel(), event.getPlayer(), isMute)));
-	}
-
-	@EventHandler(priority = EventPriority.HIGHEST)
-	private void onChannelPlayerRemove(MumblePlayerListPlayerRemovePostEvent event) {
-		if (!event.getPlayer().getServer().equals(getServer()))
-			return;
-
-		doIfPlayerJoined(() -> send(getServer().getRequestManager().onChannelPlayerRemove(getVersion(), event.getList().getChannel(), event.getPlayer())));
-	}
-
-	@EventHandler(priority = EventPriority.HIGHEST)
-	private void onParameterValueChange(MumbleParameterValueChangePostEvent event) {
-		if (!getServer().getChannels().toList().contains(event.getParameter().getSoundModifier().getChannel()))
-			return;
-
-		doIfPlayerJoined(() -> send(getServer().getRequestManager().onParameterValueChange(getVersion(), event.getParameter())));
+	/**
+	 * Notifies the remote that the online status of its player has changed.
+	 * 
+	 * @param player The player associated to this client.
+	 */
+	void onPlayerOnlineChange(IPlayer player) {
+		doIfPlayerJoined(() -> send(getServer().getRequestManager().onPlayerOnlineChange(getVersion(), player)));
 	}
 
-	@EventHandler(priority = EventPriority.HIGHEST)
-	private void onParameterMinValueChange(MumbleParameterMinValueChangePostEvent event) {
-		if (!getServer().getChannels().toList().contains(event.getParameter().getSoundModifier().getChannel()))
-			return;
-
-		doIfPlayerJoined(() -> send(getServer().getRequestManager().onParameterMinValueChange(getVersion(), event.getParameter())));
+	/**
+	 * Notifies the remote that the game address of its player has changed.
+	 * 
+	 * @param player The player associated to this client.
+	 */
+	void onPlayerGameAddressChange(IPlayer player) {
+		send(getServer().getRequestManager().onPlayerGameAddressChange(getVersion(), player));
 	}
 
-	@EventHandler(priority = EventPriority.HIGHEST)
-	private void onParameterMaxValueChange(MumbleParameterMaxValueChangePostEvent event) {
-		if (!getServer().getChannels().toList().contains(event.getParameter().getSoundModifier().getChannel()))
-			return;
-
-		doIfPlayerJoined(() -> send(getServer().getRequestManager().onParameterMaxValueChange(getVersion(), event.getParameter())));
+	/**
+	 * Notifies the remote that the administrator status of its player has changed.
+	 * 
+	 * @param player The player associated to this client.
+	 */
+	void onPlayerAdminChange(IPlayer player) {
+		doIfPlayerJoined(() -> send(getServer().getRequestManager().onPlayerAdminChange(getVersion(), player)));
 	}
 
-	@EventHandler(priority = EventPriority.HIGHEST)
-	private void onChannelSoundModifierChanged(MumbleChannelSoundModifierChangePostEvent event) {
-		if (!getServer().getChannels().toList().contains(event.getChannel()))
-			return;
-
-		doIfPlayerJoined(() -> send(getServer().getRequestManager().onChannelSoundModifierChange(getVersion(), event.getChannel())));
+	/**
+	 * Notifies the remote that the position of its player has changed.
+	 * 
+	 * @param player The player associated to this client.
+	 */
+	void onPlayerPositionChange(IPlayer player) {
+		OutboundQueue.Key key = OutboundQueue.key(MumbleIdentifier.SET_PLAYER_POSITION, player);
+		doIfPlayerJoined(() -> send(getServer().getRequestManager().onPlayerPositionChange(getVersion(), player), key));
 	}
 
-	@EventHandler
-	private void onUnexpectedDataReceived(UnexpectedDataReceivedEvent event) {
-		IMumbleMessage request = checkReceivedRequest(event);
-		if (request == null)
-			return;
-
+	@Override
+	protected void onRequest(IMumbleMessage request) {
 		// There is no need to answer to a server join request.
 		if (request.getHeader().getIdentifier() == MumbleIdentifier.SET_SERVER_JOIN) {
 			if (!isJoined.compareAndSet(false, true))
-				send(MumbleServerMessageFactory.answer(request, MumbleErrorCode.SERVER_ALREADY_JOINED));
+				answer(MumbleServerMessageFactory.answer(request, MumbleErrorCode.SERVER_ALREADY_JOINED));
 			else {
 				EventManager.callEvent(new MumbleServerClientJoinPostEvent(getServer(), this));
-				send(MumbleServerMessageFactory.answer(request));
+				answer(MumbleServerMessageFactory.answer(request));
 			}
 			return;
 		}
@@ -307,14 +207,16 @@ public class PlayerMumbleClient extends AbstractMumbleConnection implements IEve
 
 			isJoined.set(false);
 			EventManager.callEvent(new MumbleServerClientLeavePostEvent(getServer(), this));
-			send(MumbleServerMessageFactory.answer(request));
+			answer(MumbleServerMessageFactory.answer(request));
 			return;
 		}
 
 		if (checkPermission(request))
-			send(getServer().getRequestManager().answer(new RequestReceivedHolder(request, this)));
-		else
-			send(MumbleServerMessageFactory.answer(request, MumbleErrorCode.PERMISSION_REFUSED));
+			answer(getServer().getRequestManager().answer(new RequestReceivedHolder(request, this)));
+		else {
+			getMumbleServer().getRequestMetrics().count(request.getHeader().getIdentifier(), MumbleErrorCode.PERMISSION_REFUSED);
+			answer(MumbleServerMessageFactory.answer(request, MumbleErrorCode.PERMISSION_REFUSED));
+		}
 	}
 
 	@EventHandler
@@ -334,6 +236,7 @@ public class PlayerMumbleClient extends AbstractMumbleConnection implements IEve
 	private void onServerClosing(MumbleServerClosePostEvent event) {
 		getTcpConnection().dispose();
 		EventManager.unregisterListener(this);
+		getMumbleServer().getDispatcher().unregister(this);
 	}
 
 	private boolean checkPermission(IMumbleMessage request) {
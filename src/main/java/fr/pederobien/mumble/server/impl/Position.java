@@ -5,6 +5,7 @@ import java.util.Objects;
 
 import fr.pederobien.mumble.server.event.MumblePlayerPositionChangePostEvent;
 import fr.pederobien.mumble.server.event.MumblePlayerPositionChangePreEvent;
+import fr.pederobien.mumble.server.interfaces.IChannel;
 import fr.pederobien.mumble.server.interfaces.IPlayer;
 import fr.pederobien.mumble.server.interfaces.IPosition;
 import fr.pederobien.utils.event.EventManager;
@@ -13,6 +14,7 @@ public class Position implements IPosition {
 	private static final DecimalFormat FORMAT = new DecimalFormat("#.####");
 	private IPlayer player;
 	private double x, y, z, yaw, pitch;
+	private volatile long revision;
 
 	/**
 	 * Creates a position associated to a player.
@@ -86,12 +88,62 @@ public class Position implements IPosition {
 
 	@Override
 	public void update(double x, double y, double z, double yaw, double pitch) {
-		if (this.x == x && this.y == y && this.z == z && this.yaw == yaw && this.pitch == pitch)
+		if (!isDifferent(x, y, z, yaw, pitch))
 			return;
 
 		EventManager.callEvent(new MumblePlayerPositionChangePreEvent(player, x, y, z, yaw, pitch), () -> update0(x, y, z, yaw, pitch));
 	}
 
+	/**
+	 * @param x     The x coordinate.
+	 * @param y     The y coordinate.
+	 * @param z     The z coordinate.
+	 * @param yaw   The yaw angle.
+	 * @param pitch The pitch angle.
+	 * 
+	 * @return True if at least one of the given coordinates is different from the coordinates of this position.
+	 */
+	boolean isDifferent(double x, double y, double z, double yaw, double pitch) {
+		return this.x != x || this.y != y || this.z != z || this.yaw != yaw || this.pitch != pitch;
+	}
+
+	/**
+	 * Set the coordinates of this position without throwing any event. For internal use only, used when the position of several
+	 * players is updated at once.
+	 * 
+	 * @param x     The new x coordinate.
+	 * @param y     The new y coordinate.
+	 * @param z     The new z coordinate.
+	 * @param yaw   The new yaw angle.
+	 * @param pitch The new pitch angle.
+	 */
+	void set(double x, double y, double z, double yaw, double pitch) {
+		this.x = x;
+		this.y = y;
+		this.z = z;
+		this.yaw = yaw;
+		this.pitch = pitch;
+		notifyChannel();
+		revision++;
+	}
+
+	/**
+	 * @return The number of times the coordinates of this position have changed. The revision is incremented after the coordinates
+	 *         have been updated and copied by the channel of the player.
+	 */
+	protected long getRevision() {
+		return revision;
+	}
+
+	/**
+	 * Notifies the channel of the player, if any, that the coordinates have changed in order to update its spatial index and its position store.
+	 */
+	private void notifyChannel() {
+		IChannel channel = player.getChannel();
+		if (channel != null && channel.getPlayers() instanceof ChannelPlayerList)
+			((ChannelPlayerList) channel.getPlayers()).onPositionChange(player);
+	}
+
 	private String format(double number) {
 		return FORMAT.format(number);
 	}
@@ -111,6 +163,8 @@ public class Position implements IPosition {
 
 		double oldPitch = this.pitch;
 		this.pitch = pitch;
+		notifyChannel();
+		revision++;
 		EventManager.callEvent(new MumblePlayerPositionChangePostEvent(player, oldX, oldY, oldZ, oldYaw, oldPitch));
 	}
 }
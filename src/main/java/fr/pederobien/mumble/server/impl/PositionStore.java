@@ -0,0 +1,223 @@
+package fr.pederobien.mumble.server.impl;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.StampedLock;
+
+import fr.pederobien.mumble.server.interfaces.IPlayer;
+import fr.pederobien.mumble.server.interfaces.IPosition;
+
+public class PositionStore {
+	private static final int DEFAULT_CAPACITY = 16;
+	private Map<IPlayer, Integer> slots;
+	private volatile IPlayer[] players;
+	private volatile double[] x, y, z, yaw;
+	private volatile int size;
+	private StampedLock stamps;
+	private Lock lock;
+
+	/**
+	 * Creates a store that copies the coordinates of the players of a channel in parallel arrays. Each player is associated to a dense
+	 * slot, the coordinates of the player are stored at this index in each array. It allows sound modifiers to calculate the volume
+	 * for several receivers in one loop, without going through the {@link IPosition} interface. The coordinates are read without
+	 * lock, a reader that needs a consistent view calls {@link #tryOptimisticRead()} before getting the slots of the players and
+	 * {@link #validate(long)} once the coordinates have been read: since removing a player moves the last player to the freed slot,
+	 * the values read are only meaningful if no modification happened in between.
+	 */
+	public PositionStore() {
+		slots = new ConcurrentHashMap<IPlayer, Integer>();
+		players = new IPlayer[DEFAULT_CAPACITY];
+		x = new double[DEFAULT_CAPACITY];
+		y = new double[DEFAULT_CAPACITY];
+		z = new double[DEFAULT_CAPACITY];
+		yaw = new double[DEFAULT_CAPACITY];
+		stamps = new StampedLock();
+		lock = stamps.asWriteLock();
+	}
+
+	/**
+	 * Thread safe operation to add the given player to this store.
+	 *
+	 * @param player The player to add.
+	 *
+	 * @return The slot of the player.
+	 */
+	public int add(IPlayer player) {
+		lock.lock();
+		try {
+			Integer slot = slots.get(player);
+			if (slot != null)
+				return slot;
+
+			if (size == players.length)
+				grow();
+
+			int index = size;
+			players[index] = player;
+			write(index, player.getPosition());
+			slots.put(player, index);
+			size = index + 1;
+			return index;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Thread safe operation to remove the given player from this store. The last player is moved to the slot of the removed player in
+	 * order to keep the slots dense.
+	 *
+	 * @param player The player to remove.
+	 */
+	public void remove(IPlayer player) {
+		lock.lock();
+		try {
+			Integer slot = slots.remove(player);
+			if (slot == null)
+				return;
+
+			int last = size - 1;
+			if (slot != last) {
+				IPlayer moved = players[last];
+				players[slot] = moved;
+				x[slot] = x[last];
+				y[slot] = y[last];
+				z[slot] = z[last];
+				yaw[slot] = yaw[last];
+				slots.put(moved, slot);
+			}
+
+			players[last] = null;
+			size = last;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Thread safe operation to copy the current coordinates of the given player.
+	 *
+	 * @param player The player whose the position has changed.
+	 */
+	public void update(IPlayer player) {
+		lock.lock();
+		try {
+			Integer slot = slots.get(player);
+			if (slot != null)
+				write(slot, player.getPosition());
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Thread safe operation to remove each player from this store.
+	 */
+	public void clear() {
+		lock.lock();
+		try {
+			slots.clear();
+			Arrays.fill(players, null);
+			size = 0;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @param player The player whose the slot should be returned.
+	 *
+	 * @return The slot of the player, or -1 if the player is not registered.
+	 */
+	public int getSlot(IPlayer player) {
+		Integer slot = slots.get(player);
+		return slot == null ? -1 : slot;
+	}
+
+	/**
+	 * @param slot The player slot.
+	 *
+	 * @return The player registered at the given slot.
+	 */
+	public IPlayer getPlayer(int slot) {
+		return players[slot];
+	}
+
+	/**
+	 * @param slot The player slot.
+	 *
+	 * @return The x coordinate of the player registered at the given slot.
+	 */
+	public double getX(int slot) {
+		return x[slot];
+	}
+
+	/**
+	 * @param slot The player slot.
+	 *
+	 * @return The y coordinate of the player registered at the given slot.
+	 */
+	public double getY(int slot) {
+		return y[slot];
+	}
+
+	/**
+	 * @param slot The player slot.
+	 *
+	 * @return The z coordinate of the player registered at the given slot.
+	 */
+	public double getZ(int slot) {
+		return z[slot];
+	}
+
+	/**
+	 * @param slot The player slot.
+	 *
+	 * @return The yaw angle of the player registered at the given slot.
+	 */
+	public double getYaw(int slot) {
+		return yaw[slot];
+	}
+
+	/**
+	 * @return A stamp to give to {@link #validate(long)} once the slots and the coordinates have been read, zero if a modification is
+	 *         in progress.
+	 */
+	public long tryOptimisticRead() {
+		return stamps.tryOptimisticRead();
+	}
+
+	/**
+	 * @param stamp The stamp returned by {@link #tryOptimisticRead()}.
+	 * 
+	 * @return True if no player has been added, removed or moved since the stamp has been issued, false otherwise.
+	 */
+	public boolean validate(long stamp) {
+		return stamps.validate(stamp);
+	}
+
+	/**
+	 * @return The number of players registered in this store.
+	 */
+	public int size() {
+		return size;
+	}
+
+	private void write(int slot, IPosition position) {
+		x[slot] = position.getX();
+		y[slot] = position.getY();
+		z[slot] = position.getZ();
+		yaw[slot] = position.getYaw();
+	}
+
+	private void grow() {
+		int capacity = players.length * 2;
+		x = Arrays.copyOf(x, capacity);
+		y = Arrays.copyOf(y, capacity);
+		z = Arrays.copyOf(z, capacity);
+		yaw = Arrays.copyOf(yaw, capacity);
+		players = Arrays.copyOf(players, capacity);
+	}
+}
@@ -0,0 +1,258 @@
+package fr.pederobien.mumble.server.impl;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import fr.pederobien.utils.event.EventManager;
+import fr.pederobien.utils.event.LogEvent;
+
+public class RequestExecutor {
+	private static final String EXECUTOR = "Executor";
+
+	/**
+	 * The maximum number of requests of one lane processed before giving the worker back to the other lanes.
+	 */
+	private static final int BATCH_SIZE = 4;
+
+	private ExecutorService executor;
+	private boolean isVirtual;
+	private AtomicInteger depth;
+	private LongAdder executed, waitTime;
+	private AtomicLong maxWaitTime;
+
+	/**
+	 * Creates an executor that processes the requests received from the remotes on a shared pool of workers. Each connection uses its
+	 * own {@link Lane}, the requests of a lane are processed one after the other in the order they have been received, while requests
+	 * of different lanes are processed in parallel. Virtual threads are used when the JVM supports them, otherwise a fixed pool of
+	 * daemon threads is used.
+	 *
+	 * @param name The name of the server, used to name the threads.
+	 */
+	public RequestExecutor(String name) {
+		ExecutorService virtual = createVirtualExecutor();
+		isVirtual = virtual != null;
+		AtomicInteger index = new AtomicInteger();
+		executor = isVirtual ? virtual : Executors.newFixedThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors()), runnable -> {
+			Thread thread = new Thread(runnable, String.format("%s_%s_%s", name, EXECUTOR, index.incrementAndGet()));
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		depth = new AtomicInteger();
+		executed = new LongAdder();
+		waitTime = new LongAdder();
+		maxWaitTime = new AtomicLong();
+	}
+
+	/**
+	 * @return A new lane in which requests are processed in order.
+	 */
+	public Lane newLane() {
+		return new Lane();
+	}
+
+	/**
+	 * @return True if the requests are processed by virtual threads.
+	 */
+	public boolean isVirtual() {
+		return isVirtual;
+	}
+
+	/**
+	 * @return The number of requests waiting to be processed, all lanes included.
+	 */
+	public int getQueueDepth() {
+		return depth.get();
+	}
+
+	/**
+	 * @return The number of requests processed since the creation of this executor.
+	 */
+	public long getExecutedCount() {
+		return executed.sum();
+	}
+
+	/**
+	 * @return The average time, in nanoseconds, between the reception of a request and the beginning of its processing.
+	 */
+	public long getAverageWaitTime() {
+		long count = executed.sum();
+		return count == 0 ? 0 : waitTime.sum() / count;
+	}
+
+	/**
+	 * @return The maximum time, in nanoseconds, between the reception of a request and the beginning of its processing.
+	 */
+	public long getMaxWaitTime() {
+		return maxWaitTime.get();
+	}
+
+	/**
+	 * Resets the number of processed requests and the wait times. The queue depth is not modified.
+	 */
+	public void resetStatistics() {
+		executed.reset();
+		waitTime.reset();
+		maxWaitTime.set(0);
+	}
+
+	/**
+	 * Stops the workers of this executor. The requests not processed yet are discarded.
+	 */
+	public void shutdown() {
+		executor.shutdown();
+	}
+
+	/**
+	 * Run the given task and updates the metrics of this executor.
+	 *
+	 * @param task The task to run.
+	 */
+	private void run(Task task) {
+		long wait = System.nanoTime() - task.timestamp;
+		waitTime.add(wait);
+		maxWaitTime.accumulateAndGet(wait, Math::max);
+
+		try {
+			task.runnable.run();
+		} catch (RuntimeException e) {
+			EventManager.callEvent(new LogEvent("Error while processing a request: %s", e.getMessage()));
+		} finally {
+			executed.increment();
+		}
+	}
+
+	/**
+	 * @return An executor that creates a virtual thread per task if the JVM supports them, null otherwise.
+	 */
+	private static ExecutorService createVirtualExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			return null;
+		}
+	}
+
+	public class Lane {
+		private Deque<Task> tasks;
+		private boolean isScheduled;
+		private Lock lock;
+
+		private Lane() {
+			tasks = new ArrayDeque<Task>();
+			lock = new ReentrantLock(true);
+		}
+
+		/**
+		 * Thread safe operation to queue the given task. It is run once the tasks previously queued in this lane have been run.
+		 *
+		 * @param runnable The task to run.
+		 */
+		public void execute(Runnable runnable) {
+			boolean schedule = false;
+
+			lock.lock();
+			try {
+				tasks.add(new Task(runnable));
+				depth.incrementAndGet();
+				schedule = !isScheduled;
+				isScheduled = true;
+			} finally {
+				lock.unlock();
+			}
+
+			if (schedule)
+				schedule();
+		}
+
+		/**
+		 * @return The number of tasks waiting to be run in this lane.
+		 */
+		public int size() {
+			lock.lock();
+			try {
+				return tasks.size();
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		/**
+		 * Run at most {@value RequestExecutor#BATCH_SIZE} tasks, then schedule again this lane if there are remaining tasks so that a
+		 * lane with a lot of requests does not monopolize a worker. The lane is also scheduled again if a task throws an error, so that
+		 * the next tasks are still run.
+		 */
+		private void drain() {
+			boolean isEmpty = false;
+			try {
+				for (int i = 0; i < BATCH_SIZE; i++) {
+					Task task = poll();
+					if (task == null) {
+						isEmpty = true;
+						return;
+					}
+
+					run(task);
+				}
+			} finally {
+				if (!isEmpty)
+					schedule();
+			}
+		}
+
+		/**
+		 * Thread safe operation to remove the next task to run.
+		 * 
+		 * @return The next task to run, or null if there is no more task, in which case the lane is no longer scheduled.
+		 */
+		private Task poll() {
+			lock.lock();
+			try {
+				Task task = tasks.poll();
+				if (task == null)
+					isScheduled = false;
+				else
+					depth.decrementAndGet();
+				return task;
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		/**
+		 * Gives the drain of this lane to a worker. If the executor has been shut down, the pending tasks are discarded.
+		 */
+		private void schedule() {
+			try {
+				executor.execute(() -> drain());
+			} catch (RejectedExecutionException e) {
+				lock.lock();
+				try {
+					depth.addAndGet(-tasks.size());
+					tasks.clear();
+					isScheduled = false;
+				} finally {
+					lock.unlock();
+				}
+			}
+		}
+	}
+
+	private static class Task {
+		private Runnable runnable;
+		private long timestamp;
+
+		private Task(Runnable runnable) {
+			this.runnable = runnable;
+			timestamp = System.nanoTime();
+		}
+	}
+}
@@ -0,0 +1,96 @@
+package fr.pederobien.mumble.server.impl;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+public class RttEstimator {
+	/**
+	 * The minimum time, in ms, to wait for an answer from the remote.
+	 */
+	public static final int MIN_TIMEOUT = 250;
+
+	/**
+	 * The maximum time, in ms, to wait for an answer from the remote.
+	 */
+	public static final int MAX_TIMEOUT = 10000;
+
+	private double smoothed, variation;
+	private boolean hasSample;
+	private volatile int timeout;
+	private Lock lock;
+
+	/**
+	 * Creates an estimator of the round trip time with a remote, in order to adapt the time to wait for an answer. The estimation
+	 * follows the algorithm used by TCP: a smoothed round trip time and its variation are updated for each answer, the timeout is the
+	 * smoothed round trip time plus four times the variation. Each time a request times out, the timeout is doubled until an answer is
+	 * received.
+	 *
+	 * @param initialTimeout The time, in ms, to wait for an answer before the first measure.
+	 */
+	public RttEstimator(int initialTimeout) {
+		timeout = clamp(initialTimeout);
+		lock = new ReentrantLock(true);
+	}
+
+	/**
+	 * @return The time, in ms, to wait for an answer from the remote.
+	 */
+	public int getTimeout() {
+		return timeout;
+	}
+
+	/**
+	 * @return The smoothed round trip time in ms, or -1 if no answer has been received yet.
+	 */
+	public double getSmoothedRoundTripTime() {
+		lock.lock();
+		try {
+			return hasSample ? smoothed : -1;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Thread safe operation to update the estimation with the time elapsed between the sending of a request and the reception of its
+	 * answer.
+	 *
+	 * @param nanos The round trip time in nanoseconds.
+	 */
+	public void onAnswer(long nanos) {
+		double sample = (double) nanos / TimeUnit.MILLISECONDS.toNanos(1);
+
+		lock.lock();
+		try {
+			if (!hasSample) {
+				smoothed = sample;
+				variation = sample / 2;
+				hasSample = true;
+			} else {
+				variation = 0.75 * variation + 0.25 * Math.abs(smoothed - sample);
+				smoothed = 0.875 * smoothed + 0.125 * sample;
+			}
+
+			timeout = clamp((int) Math.ceil(smoothed + 4 * variation));
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Thread safe operation to double the timeout after a request that has not been answered in time.
+	 */
+	public void onTimeout() {
+		lock.lock();
+		try {
+			timeout = clamp(timeout * 2);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private int clamp(int timeout) {
+		return Math.max(MIN_TIMEOUT, Math.min(MAX_TIMEOUT, timeout));
+	}
+}
@@ -2,15 +2,16 @@ package fr.pederobien.mumble.server.impl;
 
 import java.net.InetSocketAddress;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import fr.pederobien.mumble.server.event.MumblePlayerNameChangePostEvent;
@@ -19,6 +20,8 @@ import fr.pederobien.mumble.server.event.MumbleServerPlayerAddPostEvent;
 import fr.pederobien.mumble.server.event.MumbleServerPlayerAddPreEvent;
 import fr.pederobien.mumble.server.event.MumbleServerPlayerRemovePostEvent;
 import fr.pederobien.mumble.server.event.MumbleServerPlayerRemovePreEvent;
+import fr.pederobien.mumble.server.event.MumbleServerPlayersPositionChangePostEvent;
+import fr.pederobien.mumble.server.event.MumbleServerPlayersPositionChangePreEvent;
 import fr.pederobien.mumble.server.exceptions.ServerPlayerListPlayerAlreadyRegisteredException;
 import fr.pederobien.mumble.server.interfaces.IMumbleServer;
 import fr.pederobien.mumble.server.interfaces.IPlayer;
@@ -40,7 +43,7 @@ public class ServerPlayerList implements IServerPlayerList, IEventListener {
 	public ServerPlayerList(IMumbleServer server) {
 		this.server = server;
 
-		players = new HashMap<String, IPlayer>();
+		players = new ConcurrentHashMap<String, IPlayer>();
 		lock = new ReentrantLock(true);
 
 		EventManager.registerListener(this);
@@ -73,6 +76,46 @@ public class ServerPlayerList implements IServerPlayerList, IEventListener {
 		return preEvent.isCancelled() ? null : player;
 	}
 
+	@Override
+	public List<IPlayer> updatePositions(String[] names, double[] x, double[] y, double[] z, double[] yaw, double[] pitch) {
+		int length = names.length;
+		if (x.length != length || y.length != length || z.length != length || yaw.length != length || pitch.length != length)
+			throw new IllegalArgumentException("The names and the coordinates arrays must have the same length");
+
+		// Step 1: Filtering players whose the position is about to change
+		List<IPlayer> players = new ArrayList<IPlayer>(length);
+		Position[] positions = new Position[length];
+		int[] indexes = new int[length];
+		for (int i = 0; i < length; i++) {
+			IPlayer player = this.players.get(names[i]);
+			if (player == null || !(player.getPosition() instanceof Position))
+				continue;
+
+			Position position = (Position) player.getPosition();
+			if (!position.isDifferent(x[i], y[i], z[i], yaw[i], pitch[i]))
+				continue;
+
+			positions[players.size()] = position;
+			indexes[players.size()] = i;
+			players.add(player);
+		}
+
+		if (players.isEmpty())
+			return players;
+
+		// Step 2: Updating each position in one pass
+		Runnable update = () -> {
+			for (int i = 0; i < players.size(); i++) {
+				int index = indexes[i];
+				positions[i].set(x[index], y[index], z[index], yaw[index], pitch[index]);
+			}
+		};
+
+		MumbleServerPlayersPositionChangePreEvent preEvent = new MumbleServerPlayersPositionChangePreEvent(this, players);
+		EventManager.callEvent(preEvent, update, new MumbleServerPlayersPositionChangePostEvent(this, players));
+		return preEvent.isCancelled() ? new ArrayList<IPlayer>() : players;
+	}
+
 	@Override
 	public IPlayer remove(String name) {
 		Optional<IPlayer> optPlayer = get(name);
@@ -109,7 +152,7 @@ public class ServerPlayerList implements IServerPlayerList, IEventListener {
 
 	@Override
 	public Stream<IPlayer> stream() {
-		return toList().stream();
+		return players.values().stream();
 	}
 
 	@Override
@@ -119,9 +162,7 @@ public class ServerPlayerList implements IServerPlayerList, IEventListener {
 
 	@Override
 	public List<IPlayer> getPlayersInChannel() {
-		List<IPlayer> players = toList();
-		players.removeIf(player -> player.getChannel() == null);
-		return players;
+		return stream().filter(player -> player.getChannel() != null).collect(Collectors.toList());
 	}
 
 	@EventHandler
@@ -136,7 +177,9 @@ public class ServerPlayerList implements IServerPlayerList, IEventListener {
 
 		lock.lock();
 		try {
-			players.put(event.getPlayer().getName(), players.remove(event.getOldName()));
+			// Registering the new name first so that a concurrent reader always finds the player
+			players.put(event.getPlayer().getName(), players.get(event.getOldName()));
+			players.remove(event.getOldName());
 		} finally {
 			lock.unlock();
 		}
@@ -0,0 +1,185 @@
+package fr.pederobien.mumble.server.impl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+import fr.pederobien.mumble.server.interfaces.IPlayer;
+import fr.pederobien.mumble.server.interfaces.IPosition;
+
+public class SpatialGrid {
+	private static final int BITS = 21;
+	private static final long MASK = (1L << BITS) - 1;
+	private volatile double cellSize;
+	private Map<Long, Set<IPlayer>> cells;
+	private Map<IPlayer, Long> locations;
+	private Lock lock;
+
+	/**
+	 * Creates a uniform grid that gathers players by cubic cells. It is used to find the players close to a position without testing
+	 * each player of a channel. The size of the cells is adapted to the range of the last query, so that a query only visits the 27
+	 * cells around the position.
+	 */
+	public SpatialGrid() {
+		cellSize = 1.0;
+		cells = new ConcurrentHashMap<Long, Set<IPlayer>>();
+		locations = new ConcurrentHashMap<IPlayer, Long>();
+		lock = new ReentrantLock(true);
+	}
+
+	/**
+	 * Thread safe operation to add the given player to this grid.
+	 *
+	 * @param player The player to add.
+	 */
+	public void add(IPlayer player) {
+		move(player);
+	}
+
+	/**
+	 * Thread safe operation to move the given player to the cell that corresponds to its current position. If the player is not
+	 * registered, it is added to this grid.
+	 *
+	 * @param player The player whose the position has changed.
+	 */
+	public void move(IPlayer player) {
+		lock.lock();
+		try {
+			long key = getKey(player.getPosition(), cellSize);
+			Long current = locations.get(player);
+			if (current != null && current == key)
+				return;
+
+			if (current != null)
+				removeFromCell(current, player);
+
+			locations.put(player, key);
+			cells.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(player);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Thread safe operation to remove the given player from this grid.
+	 *
+	 * @param player The player to remove.
+	 */
+	public void remove(IPlayer player) {
+		lock.lock();
+		try {
+			Long current = locations.remove(player);
+			if (current != null)
+				removeFromCell(current, player);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Thread safe operation to remove each player from this grid.
+	 */
+	public void clear() {
+		lock.lock();
+		try {
+			locations.clear();
+			cells.clear();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Run the given action for each player whose the distance to the given position is less than or equal to the range.
+	 *
+	 * @param center The position from which the distance is calculated.
+	 * @param range  The maximum distance between the position and the players.
+	 * @param action The action to run for each player in range.
+	 */
+	public void forEach(IPosition center, double range, Consumer<IPlayer> action) {
+		if (range != cellSize)
+			resize(range);
+
+		double size = cellSize;
+		long cx = getCell(center.getX(), size), cy = getCell(center.getY(), size), cz = getCell(center.getZ(), size);
+		double squaredRange = range * range;
+
+		for (long i = cx - 1; i <= cx + 1; i++) {
+			for (long j = cy - 1; j <= cy + 1; j++) {
+				for (long k = cz - 1; k <= cz + 1; k++) {
+					Set<IPlayer> cell = cells.get(pack(i, j, k));
+					if (cell == null)
+						continue;
+
+					for (IPlayer player : cell) {
+						IPosition position = player.getPosition();
+						double dx = position.getX() - center.getX();
+						double dy = position.getY() - center.getY();
+						double dz = position.getZ() - center.getZ();
+						if (dx * dx + dy * dy + dz * dz <= squaredRange)
+							action.accept(player);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Thread safe operation to change the size of the cells and to dispatch again each player.
+	 *
+	 * @param size The new cell size.
+	 */
+	private void resize(double size) {
+		lock.lock();
+		try {
+			if (cellSize == size)
+				return;
+
+			List<IPlayer> players = new ArrayList<IPlayer>(locations.keySet());
+			Map<Long, Set<IPlayer>> resized = new HashMap<Long, Set<IPlayer>>();
+			for (IPlayer player : players) {
+				long key = getKey(player.getPosition(), size);
+				locations.put(player, key);
+				resized.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(player);
+			}
+
+			cells.clear();
+			cells.putAll(resized);
+			cellSize = size;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void removeFromCell(long key, IPlayer player) {
+		Set<IPlayer> cell = cells.get(key);
+		if (cell == null)
+			return;
+
+		cell.remove(player);
+		if (cell.isEmpty())
+			cells.remove(key);
+	}
+
+	private long getKey(IPosition position, double size) {
+		return pack(getCell(position.getX(), size), getCell(position.getY(), size), getCell(position.getZ(), size));
+	}
+
+	private long getCell(double coordinate, double size) {
+		return (long) Math.floor(coordinate / size);
+	}
+
+	/**
+	 * Packs the three cell indexes in one long, using {@value #BITS} bits per axis. Indexes beyond this range wrap, so that far cells
+	 * may share the same key. It only adds players to test, since the distance is always checked.
+	 */
+	private long pack(long x, long y, long z) {
+		return (x & MASK) << (2 * BITS) | (y & MASK) << BITS | (z & MASK);
+	}
+}
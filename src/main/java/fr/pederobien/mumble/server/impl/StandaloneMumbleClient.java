@@ -3,7 +3,6 @@ package fr.pederobien.mumble.server.impl;
 import java.util.Optional;
 
 import fr.pederobien.communication.event.ConnectionLostEvent;
-import fr.pederobien.communication.event.UnexpectedDataReceivedEvent;
 import fr.pederobien.communication.interfaces.ITcpConnection;
 import fr.pederobien.mumble.common.impl.MumbleErrorCode;
 import fr.pederobien.mumble.common.impl.MumbleIdentifier;
@@ -25,6 +24,7 @@ import fr.pederobien.mumble.server.event.MumbleServerChannelAddPostEvent;
 import fr.pederobien.mumble.server.event.MumbleServerChannelRemovePostEvent;
 import fr.pederobien.mumble.server.event.MumbleServerPlayerAddPostEvent;
 import fr.pederobien.mumble.server.event.MumbleServerPlayerRemovePostEvent;
+import fr.pederobien.mumble.server.event.MumbleServerPlayersPositionChangePostEvent;
 import fr.pederobien.mumble.server.interfaces.IPlayer;
 import fr.pederobien.utils.event.EventHandler;
 import fr.pederobien.utils.event.EventManager;
@@ -46,9 +46,12 @@ public class StandaloneMumbleClient extends AbstractMumbleConnection implements
 	 */
 	protected StandaloneMumbleClient(StandaloneMumbleServer server, ITcpConnection connection) {
 		super(server, connection);
+		startHandshake();
+	}
 
-		if (establishCommunicationProtocolVersion())
-			EventManager.registerListener(this);
+	@Override
+	protected void onHandshakeEstablished() {
+		EventManager.registerListener(this);
 	}
 
 	@EventHandler(priority = EventPriority.HIGHEST)
@@ -165,7 +168,16 @@ public class StandaloneMumbleClient extends AbstractMumbleConnection implements
 		if (!event.getPlayer().getServer().equals(getServer()))
 			return;
 
-		send(getServer().getRequestManager().onPlayerPositionChange(getVersion(), event.getPlayer()));
+		send(getServer().getRequestManager().onPlayerPositionChange(getVersion(), event.getPlayer()), OutboundQueue.key(MumbleIdentifier.SET_PLAYER_POSITION, event.getPlayer()));
+	}
+
+	@EventHandler(priority = EventPriority.HIGHEST)
+	private void onPlayersPositionChange(MumbleServerPlayersPositionChangePostEvent event) {
+		if (!event.getList().getServer().equals(getServer()))
+			return;
+
+		for (IPlayer player : event.getPlayers())
+			send(getServer().getRequestManager().onPlayerPositionChange(getVersion(), player), OutboundQueue.key(MumbleIdentifier.SET_PLAYER_POSITION, player));
 	}
 
 	@EventHandler(priority = EventPriority.HIGHEST)
@@ -189,7 +201,7 @@ public class StandaloneMumbleClient extends AbstractMumbleConnection implements
 		if (!getServer().getChannels().toList().contains(event.getParameter().getSoundModifier().getChannel()))
 			return;
 
-		send(getServer().getRequestManager().onParameterValueChange(getVersion(), event.getParameter()));
+		send(getServer().getRequestManager().onParameterValueChange(getVersion(), event.getParameter()), OutboundQueue.key(MumbleIdentifier.SET_PARAMETER_VALUE, event.getParameter()));
 	}
 
 	@EventHandler(priority = EventPriority.HIGHEST)
@@ -197,7 +209,7 @@ public class StandaloneMumbleClient extends AbstractMumbleConnection implements
 		if (!getServer().getChannels().toList().contains(event.getParameter().getSoundModifier().getChannel()))
 			return;
 
-		send(getServer().getRequestManager().onParameterMinValueChange(getVersion(), event.getParameter()));
+		send(getServer().getRequestManager().onParameterMinValueChange(getVersion(), event.getParameter()), OutboundQueue.key(MumbleIdentifier.SET_PARAMETER_MIN_VALUE, event.getParameter()));
 	}
 
 	@EventHandler(priority = EventPriority.HIGHEST)
@@ -205,7 +217,7 @@ public class StandaloneMumbleClient extends AbstractMumbleConnection implements
 		if (!getServer().getChannels().toList().contains(event.getParameter().getSoundModifier().getChannel()))
 			return;
 
-		send(getServer().getRequestManager().onParameterMaxValueChange(getVersion(), event.getParameter()));
+		send(getServer().getRequestManager().onParameterMaxValueChange(getVersion(), event.getParameter()), OutboundQueue.key(MumbleIdentifier.SET_PARAMETER_MAX_VALUE, event.getParameter()));
 	}
 
 	@EventHandler(priority = EventPriority.HIGHEST)
@@ -216,20 +228,18 @@ public class StandaloneMumbleClient extends AbstractMumbleConnection implements
 		send(getServer().getRequestManager().onChannelSoundModifierChange(getVersion(), event.getChannel()));
 	}
 
-	@EventHandler
-	private void onUnexpectedDataReceived(UnexpectedDataReceivedEvent event) {
-		IMumbleMessage request = checkReceivedRequest(event);
-		if (request == null)
-			return;
-
+	@Override
+	protected void onRequest(IMumbleMessage request) {
 		if (getVersion() != -1 && getVersion() != request.getHeader().getVersion()) {
 			String format = "Receiving message with unexpected getVersion() of the communication protocol, expected=v%s, actual=v%s";
 			EventManager.callEvent(new LogEvent(format, getVersion(), request.getHeader().getVersion()));
 		} else {
 			if (request.getHeader().getIdentifier() != MumbleIdentifier.UNKNOWN)
-				send(getServer().getRequestManager().answer(new RequestReceivedHolder(request, this)));
-			else
-				send(MumbleServerMessageFactory.answer(request, MumbleErrorCode.PERMISSION_REFUSED));
+				answer(getServer().getRequestManager().answer(new RequestReceivedHolder(request, this)));
+			else {
+				getMumbleServer().getRequestMetrics().count(request.getHeader().getIdentifier(), MumbleErrorCode.PERMISSION_REFUSED);
+				answer(MumbleServerMessageFactory.answer(request, MumbleErrorCode.PERMISSION_REFUSED));
+			}
 		}
 	}
 
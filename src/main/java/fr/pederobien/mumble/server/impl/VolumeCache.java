@@ -0,0 +1,150 @@
+package fr.pederobien.mumble.server.impl;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import fr.pederobien.mumble.server.interfaces.IPlayer;
+import fr.pederobien.mumble.server.interfaces.ISoundModifier;
+import fr.pederobien.vocal.common.impl.VolumeResult;
+
+public class VolumeCache {
+	private Map<IPlayer, Map<IPlayer, Entry>> volumes;
+	private AtomicLong revision;
+
+	/**
+	 * Creates a cache for the volumes calculated between the players of a channel. An entry is valid as long as the position of the
+	 * transmitter, the position of the receiver and the sound modifier of the channel did not change since its calculation.
+	 */
+	public VolumeCache() {
+		volumes = new ConcurrentHashMap<IPlayer, Map<IPlayer, Entry>>();
+		revision = new AtomicLong();
+	}
+
+	/**
+	 * Get the volume calculated by the sound modifier for the given players. If the volume has already been calculated and if it is
+	 * still valid, the sound modifier is not called.
+	 *
+	 * @param soundModifier The sound modifier of the channel.
+	 * @param transmitter   The player currently speaking.
+	 * @param receiver      The player currently hearing.
+	 *
+	 * @return The volume to apply to the audio sample sent to the receiver.
+	 */
+	public VolumeResult get(ISoundModifier soundModifier, IPlayer transmitter, IPlayer receiver) {
+		// The revisions are read before the calculation so that a concurrent change invalidates the new entry.
+		long transmitterRevision = getRevision(transmitter);
+		long receiverRevision = getRevision(receiver);
+		long modifierRevision = getRevision();
+
+		VolumeResult volume = get(transmitter, receiver, transmitterRevision, receiverRevision, modifierRevision);
+		if (volume != null)
+			return volume;
+
+		volume = soundModifier.calculate(transmitter, receiver);
+		put(transmitter, receiver, volume, transmitterRevision, receiverRevision, modifierRevision);
+		return volume;
+	}
+
+	/**
+	 * Get the volume calculated for the given players if it is still valid according to the given revisions.
+	 *
+	 * @param transmitter         The player currently speaking.
+	 * @param receiver            The player currently hearing.
+	 * @param transmitterRevision The revision of the transmitter position.
+	 * @param receiverRevision    The revision of the receiver position.
+	 * @param modifierRevision    The revision of the sound modifier.
+	 *
+	 * @return The cached volume, or null if there is no valid cached volume.
+	 */
+	public VolumeResult get(IPlayer transmitter, IPlayer receiver, long transmitterRevision, long receiverRevision, long modifierRevision) {
+		// The position cannot be tracked, the volume is not cached.
+		if (transmitterRevision == -1 || receiverRevision == -1)
+			return null;
+
+		Map<IPlayer, Entry> row = volumes.get(transmitter);
+		if (row == null)
+			return null;
+
+		Entry entry = row.get(receiver);
+		return entry != null && entry.isValid(transmitterRevision, receiverRevision, modifierRevision) ? entry.volume : null;
+	}
+
+	/**
+	 * Stores the volume calculated for the given players. The revisions must have been read before the calculation, so that a
+	 * concurrent change invalidates the new entry.
+	 *
+	 * @param transmitter         The player currently speaking.
+	 * @param receiver            The player currently hearing.
+	 * @param volume              The calculated volume.
+	 * @param transmitterRevision The revision of the transmitter position.
+	 * @param receiverRevision    The revision of the receiver position.
+	 * @param modifierRevision    The revision of the sound modifier.
+	 */
+	public void put(IPlayer transmitter, IPlayer receiver, VolumeResult volume, long transmitterRevision, long receiverRevision, long modifierRevision) {
+		if (transmitterRevision == -1 || receiverRevision == -1)
+			return;
+
+		Map<IPlayer, Entry> row = volumes.get(transmitter);
+		if (row == null)
+			row = volumes.computeIfAbsent(transmitter, player -> new ConcurrentHashMap<IPlayer, Entry>());
+		row.put(receiver, new Entry(volume, transmitterRevision, receiverRevision, modifierRevision));
+	}
+
+	/**
+	 * @return The current revision of the sound modifier, incremented each time this cache is invalidated.
+	 */
+	public long getRevision() {
+		return revision.get();
+	}
+
+	/**
+	 * @param player The player whose the position revision should be returned.
+	 *
+	 * @return The revision of the player position, or -1 if the position cannot be tracked.
+	 */
+	public static long getRevision(IPlayer player) {
+		return player.getPosition() instanceof Position ? ((Position) player.getPosition()).getRevision() : -1;
+	}
+
+	/**
+	 * Invalidates each calculated volume. Should be called when the sound modifier or one of its parameters changes.
+	 */
+	public void invalidate() {
+		revision.incrementAndGet();
+	}
+
+	/**
+	 * Removes each volume calculated for the given player, as transmitter or as receiver.
+	 *
+	 * @param player The player to remove.
+	 */
+	public void remove(IPlayer player) {
+		volumes.remove(player);
+		for (Map<IPlayer, Entry> row : volumes.values())
+			row.remove(player);
+	}
+
+	/**
+	 * Removes each calculated volume.
+	 */
+	public void clear() {
+		volumes.clear();
+	}
+
+	private static class Entry {
+		private VolumeResult volume;
+		private long transmitterRevision, receiverRevision, modifierRevision;
+
+		private Entry(VolumeResult volume, long transmitterRevision, long receiverRevision, long modifierRevision) {
+			this.volume = volume;
+			this.transmitterRevision = transmitterRevision;
+			this.receiverRevision = receiverRevision;
+			this.modifierRevision = modifierRevision;
+		}
+
+		private boolean isValid(long transmitterRevision, long receiverRevision, long modifierRevision) {
+			return this.transmitterRevision == transmitterRevision && this.receiverRevision == receiverRevision && this.modifierRevision == modifierRevision;
+		}
+	}
+}
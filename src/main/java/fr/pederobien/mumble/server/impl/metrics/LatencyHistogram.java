@@ -0,0 +1,123 @@
+package fr.pederobien.mumble.server.impl.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+public class LatencyHistogram {
+	/**
+	 * The number of bits used to split each power of two in sub buckets. With 16 sub buckets, the relative error of a recorded value
+	 * is less than 1/16.
+	 */
+	private static final int SUB_BUCKET_BITS = 4;
+	private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+	private static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+	private AtomicLongArray counts;
+	private LongAdder count, sum;
+	private AtomicLong max;
+
+	/**
+	 * Creates a histogram of durations with a log-linear bucketing: each power of two is split in {@value #SUB_BUCKET_COUNT} buckets
+	 * of the same width, so that the memory is constant and the relative error of percentiles is bounded whatever the recorded
+	 * values. Recording a value never blocks.
+	 */
+	public LatencyHistogram() {
+		counts = new AtomicLongArray(BUCKET_COUNT);
+		count = new LongAdder();
+		sum = new LongAdder();
+		max = new AtomicLong();
+	}
+
+	/**
+	 * Thread safe operation to record the given duration.
+	 *
+	 * @param nanos The duration in nanoseconds.
+	 */
+	public void record(long nanos) {
+		long value = Math.max(0, nanos);
+		counts.incrementAndGet(index(value));
+		count.increment();
+		sum.add(value);
+		max.accumulateAndGet(value, Math::max);
+	}
+
+	/**
+	 * @return The number of recorded durations.
+	 */
+	public long getCount() {
+		return count.sum();
+	}
+
+	/**
+	 * @return The mean of the recorded durations in nanoseconds, or 0 if no duration has been recorded.
+	 */
+	public long getMean() {
+		long total = count.sum();
+		return total == 0 ? 0 : sum.sum() / total;
+	}
+
+	/**
+	 * @return The maximum recorded duration in nanoseconds.
+	 */
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * Get the duration below which the given percentage of the recorded durations fall.
+	 *
+	 * @param percentile The percentage, between 0 and 100.
+	 *
+	 * @return The highest duration, in nanoseconds, of the bucket that contains the percentile, or 0 if no duration has been recorded.
+	 */
+	public long getPercentile(double percentile) {
+		long total = 0;
+		long[] snapshot = new long[BUCKET_COUNT];
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			snapshot[i] = counts.get(i);
+			total += snapshot[i];
+		}
+
+		if (total == 0)
+			return 0;
+
+		long rank = Math.max(1, (long) Math.ceil(Math.min(100, Math.max(0, percentile)) / 100 * total));
+		long cumulated = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			cumulated += snapshot[i];
+			if (cumulated >= rank)
+				return Math.min(highest(i), getMax());
+		}
+		return getMax();
+	}
+
+	/**
+	 * @param value The value to record.
+	 *
+	 * @return The index of the bucket that contains the value.
+	 */
+	private static int index(long value) {
+		if (value < SUB_BUCKET_COUNT)
+			return (int) value;
+
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int sub = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1);
+		return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT + sub;
+	}
+
+	/**
+	 * @param index The index of a bucket.
+	 *
+	 * @return The highest value that belongs to the bucket.
+	 */
+	private static long highest(int index) {
+		if (index < SUB_BUCKET_COUNT)
+			return index;
+
+		int exponent = index / SUB_BUCKET_COUNT + SUB_BUCKET_BITS - 1;
+		long sub = index % SUB_BUCKET_COUNT;
+		long width = 1L << (exponent - SUB_BUCKET_BITS);
+		return ((SUB_BUCKET_COUNT + sub) << (exponent - SUB_BUCKET_BITS)) + width - 1;
+	}
+}
@@ -0,0 +1,281 @@
+package fr.pederobien.mumble.server.impl.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import fr.pederobien.mumble.common.impl.MumbleErrorCode;
+import fr.pederobien.mumble.common.impl.MumbleIdentifier;
+import fr.pederobien.mumble.server.impl.AbstractMumbleServer;
+import fr.pederobien.mumble.server.impl.RequestExecutor;
+import fr.pederobien.mumble.server.interfaces.IMumbleServer;
+import fr.pederobien.mumble.server.interfaces.IRequestMetricsReporter;
+import fr.pederobien.mumble.server.interfaces.RequestStatistics;
+import fr.pederobien.utils.event.EventManager;
+import fr.pederobien.utils.event.LogEvent;
+
+public class RequestMetrics implements RequestMetricsMXBean {
+	/**
+	 * The default time, in milliseconds, between two reports of the statistics to the reporters.
+	 */
+	public static final long DEFAULT_REPORT_PERIOD = 60000;
+
+	private static final String DOMAIN = "fr.pederobien.mumble.server";
+	private static final AtomicInteger IDS = new AtomicInteger();
+	private IMumbleServer server;
+	private volatile Map<MumbleIdentifier, Entry> entries;
+	private List<IRequestMetricsReporter> reporters;
+	private ScheduledFuture<?> reporting;
+	private ObjectName name;
+
+	/**
+	 * Creates a registry of the time spent to answer the requests received by a server and of the outcome of those requests, per
+	 * identifier of request. Recording a value never blocks, so that the metrics can be updated by each thread that processes a
+	 * request.
+	 *
+	 * @param server The server that receives the requests.
+	 */
+	public RequestMetrics(IMumbleServer server) {
+		this.server = server;
+		entries = createEntries();
+		reporters = new CopyOnWriteArrayList<IRequestMetricsReporter>();
+	}
+
+	/**
+	 * Thread safe operation to record the time spent to answer a request and the outcome of the request.
+	 *
+	 * @param identifier The identifier of the request.
+	 * @param errorCode  The error code of the answer.
+	 * @param nanos      The time, in nanoseconds, spent to answer the request.
+	 */
+	public void record(MumbleIdentifier identifier, MumbleErrorCode errorCode, long nanos) {
+		Entry entry = entries.get(identifier);
+		entry.histogram.record(nanos);
+		entry.outcomes[errorCode.ordinal()].increment();
+	}
+
+	/**
+	 * Thread safe operation to record the outcome of a request that has been answered without being processed, for instance because
+	 * the remote has not the permission.
+	 *
+	 * @param identifier The identifier of the request.
+	 * @param errorCode  The error code of the answer.
+	 */
+	public void count(MumbleIdentifier identifier, MumbleErrorCode errorCode) {
+		entries.get(identifier).outcomes[errorCode.ordinal()].increment();
+	}
+
+	@Override
+	public List<RequestStatistics> getStatistics() {
+		List<RequestStatistics> statistics = new ArrayList<RequestStatistics>();
+		for (Map.Entry<MumbleIdentifier, Entry> entry : entries.entrySet()) {
+			Map<String, Long> outcomes = new LinkedHashMap<String, Long>();
+			for (MumbleErrorCode errorCode : MumbleErrorCode.values()) {
+				long count = entry.getValue().outcomes[errorCode.ordinal()].sum();
+				if (count > 0)
+					outcomes.put(errorCode.name(), count);
+			}
+
+			if (outcomes.isEmpty())
+				continue;
+
+			LatencyHistogram histogram = entry.getValue().histogram;
+			statistics.add(new RequestStatistics(entry.getKey().name(), histogram.getCount(), histogram.getMean(), histogram.getPercentile(50),
+					histogram.getPercentile(99), histogram.getMax(), outcomes));
+		}
+		return statistics;
+	}
+
+	@Override
+	public long getAnsweredCount() {
+		long count = 0;
+		for (Entry entry : entries.values())
+			count += entry.histogram.getCount();
+		return count;
+	}
+
+	@Override
+	public long getRefusedCount() {
+		return sum(MumbleErrorCode.PERMISSION_REFUSED);
+	}
+
+	@Override
+	public long getCancelledCount() {
+		return sum(MumbleErrorCode.REQUEST_CANCELLED);
+	}
+
+	@Override
+	public int getQueueDepth() {
+		RequestExecutor executor = getExecutor();
+		return executor == null ? 0 : executor.getQueueDepth();
+	}
+
+	@Override
+	public long getAverageQueueWaitTime() {
+		RequestExecutor executor = getExecutor();
+		return executor == null ? 0 : executor.getAverageWaitTime();
+	}
+
+	@Override
+	public long getMaxQueueWaitTime() {
+		RequestExecutor executor = getExecutor();
+		return executor == null ? 0 : executor.getMaxWaitTime();
+	}
+
+	@Override
+	public void reset() {
+		entries = createEntries();
+
+		RequestExecutor executor = getExecutor();
+		if (executor != null)
+			executor.resetStatistics();
+	}
+
+	/**
+	 * Adds a reporter to which the statistics are given each time {@link #report()} is called, see
+	 * {@link #startReporting(ScheduledExecutorService, long)}.
+	 *
+	 * @param reporter The reporter to add.
+	 */
+	public void addReporter(IRequestMetricsReporter reporter) {
+		reporters.add(reporter);
+	}
+
+	/**
+	 * Removes the given reporter.
+	 *
+	 * @param reporter The reporter to remove.
+	 */
+	public void removeReporter(IRequestMetricsReporter reporter) {
+		reporters.remove(reporter);
+	}
+
+	/**
+	 * Gives the current statistics to each registered reporter. A reporter that throws an exception does not prevent the other
+	 * reporters from receiving the statistics.
+	 */
+	public void report() {
+		if (reporters.isEmpty())
+			return;
+
+		List<RequestStatistics> statistics = getStatistics();
+		for (IRequestMetricsReporter reporter : reporters) {
+			try {
+				reporter.report(server, statistics);
+			} catch (RuntimeException e) {
+				EventManager.callEvent(new LogEvent("Error while reporting the request metrics of %s: %s", server.getName(), e.getMessage()));
+			}
+		}
+	}
+
+	/**
+	 * Calls {@link #report()} periodically on the given scheduler until {@link #stopReporting()} is called. If the statistics are
+	 * already reported periodically, the previous period is replaced.
+	 *
+	 * @param scheduler The scheduler used to run the reports.
+	 * @param period    The time, in milliseconds, between two reports.
+	 */
+	public synchronized void startReporting(ScheduledExecutorService scheduler, long period) {
+		stopReporting();
+		try {
+			reporting = scheduler.scheduleAtFixedRate(() -> report(), period, period, TimeUnit.MILLISECONDS);
+		} catch (RejectedExecutionException e) {
+			// The server is closing
+		}
+	}
+
+	/**
+	 * Stops reporting periodically the statistics, the statistics are given one last time to the reporters.
+	 */
+	public synchronized void stopReporting() {
+		if (reporting == null)
+			return;
+
+		reporting.cancel(false);
+		reporting = null;
+		report();
+	}
+
+	/**
+	 * Registers this registry in the platform MBean server, so that the statistics can be read through JMX. The object name contains
+	 * the name of the server and an identifier unique in the JVM, so that two servers with the same name do not share the same bean.
+	 */
+	public void registerMBean() {
+		if (name != null)
+			return;
+
+		try {
+			String format = "%s:type=RequestMetrics,name=%s,id=%s";
+			ObjectName objectName = new ObjectName(String.format(format, DOMAIN, ObjectName.quote(server.getName()), IDS.incrementAndGet()));
+			ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+			name = objectName;
+		} catch (JMException e) {
+			EventManager.callEvent(new LogEvent("Cannot register the request metrics of %s: %s", server.getName(), e.getMessage()));
+		}
+	}
+
+	/**
+	 * Unregisters this registry from the platform MBean server.
+	 */
+	public void unregisterMBean() {
+		if (name == null)
+			return;
+
+		try {
+			MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+			if (mbeanServer.isRegistered(name))
+				mbeanServer.unregisterMBean(name);
+		} catch (JMException e) {
+			EventManager.callEvent(new LogEvent("Cannot unregister the request metrics of %s: %s", server.getName(), e.getMessage()));
+		} finally {
+			name = null;
+		}
+	}
+
+	/**
+	 * @return The executor that processes the requests received by the server, or null if the server does not use one.
+	 */
+	private RequestExecutor getExecutor() {
+		return server instanceof AbstractMumbleServer ? ((AbstractMumbleServer) server).getRequestExecutor() : null;
+	}
+
+	private long sum(MumbleErrorCode errorCode) {
+		long count = 0;
+		for (Entry entry : entries.values())
+			count += entry.outcomes[errorCode.ordinal()].sum();
+		return count;
+	}
+
+	private Map<MumbleIdentifier, Entry> createEntries() {
+		Map<MumbleIdentifier, Entry> entries = new EnumMap<MumbleIdentifier, Entry>(MumbleIdentifier.class);
+		for (MumbleIdentifier identifier : MumbleIdentifier.values())
+			entries.put(identifier, new Entry());
+		return entries;
+	}
+
+	private static class Entry {
+		private LatencyHistogram histogram;
+		private LongAdder[] outcomes;
+
+		private Entry() {
+			histogram = new LatencyHistogram();
+			outcomes = new LongAdder[MumbleErrorCode.values().length];
+			for (int i = 0; i < outcomes.length; i++)
+				outcomes[i] = new LongAdder();
+		}
+	}
+}
@@ -0,0 +1,48 @@
+package fr.pederobien.mumble.server.impl.metrics;
+
+import java.util.List;
+
+import fr.pederobien.mumble.server.interfaces.RequestStatistics;
+
+public interface RequestMetricsMXBean {
+
+	/**
+	 * @return The statistics of each request identifier received at least once.
+	 */
+	List<RequestStatistics> getStatistics();
+
+	/**
+	 * @return The number of requests answered by the server, all identifiers included.
+	 */
+	long getAnsweredCount();
+
+	/**
+	 * @return The number of requests refused because the remote has not the permission, all identifiers included.
+	 */
+	long getRefusedCount();
+
+	/**
+	 * @return The number of requests cancelled by an event listener, all identifiers included.
+	 */
+	long getCancelledCount();
+
+	/**
+	 * @return The number of received requests waiting to be processed, all connections included.
+	 */
+	int getQueueDepth();
+
+	/**
+	 * @return The average time, in nanoseconds, between the reception of a request and the beginning of its processing.
+	 */
+	long getAverageQueueWaitTime();
+
+	/**
+	 * @return The maximum time, in nanoseconds, between the reception of a request and the beginning of its processing.
+	 */
+	long getMaxQueueWaitTime();
+
+	/**
+	 * Discards each recorded value.
+	 */
+	void reset();
+}
@@ -1,6 +1,7 @@
 package fr.pederobien.mumble.server.impl.modifiers;
 
 import fr.pederobien.mumble.server.impl.MathHelper;
+import fr.pederobien.mumble.server.impl.PositionStore;
 import fr.pederobien.mumble.server.interfaces.IParameter;
 import fr.pederobien.mumble.server.interfaces.IPlayer;
 import fr.pederobien.vocal.common.impl.VolumeResult;
@@ -37,8 +38,47 @@ public class LinearCircularSoundModifier extends SoundModifier {
 	@Override
 	protected VolumeResult dispatch(IPlayer transmitter, IPlayer receiver) {
 		double distance = MathHelper.getDistance3D(transmitter.getPosition(), receiver.getPosition());
-		double[] volumes = MathHelper.getDefaultLeftAndRightVolume(transmitter.getPosition(), receiver.getPosition());
-		return new VolumeResult((-1.0 / radiusParameter.getValue()) * distance + 1, volumes[0], volumes[1]);
+		double yaw = MathHelper.getInverseYaw(transmitter.getPosition(), receiver.getPosition());
+		return new VolumeResult((-1.0 / radiusParameter.getValue()) * distance + 1, MathHelper.getLeftVolume(yaw), MathHelper.getRightVolume(yaw));
+	}
+
+	/**
+	 * Calculates the volumes directly on the coordinates of the store if {@link #isDefaultDispatch()} returns true, otherwise the
+	 * volumes are calculated one receiver after the other by the method {@link #dispatch(IPlayer, IPlayer)}.
+	 */
+	@Override
+	public void calculate(PositionStore store, int transmitter, int[] receivers, int count, VolumeResult[] volumes) {
+		if (!isDefaultDispatch()) {
+			super.calculate(store, transmitter, receivers, count, volumes);
+			return;
+		}
+
+		double slope = -1.0 / radiusParameter.getValue();
+		boolean sendFeedback = sendFeedback();
+		double x = store.getX(transmitter), y = store.getY(transmitter), z = store.getZ(transmitter);
+
+		for (int i = 0; i < count; i++) {
+			int receiver = receivers[i];
+			if (receiver == transmitter && !sendFeedback) {
+				volumes[i] = VolumeResult.NONE;
+				continue;
+			}
+
+			double dx = store.getX(receiver) - x;
+			double dy = store.getY(receiver) - y;
+			double dz = store.getZ(receiver) - z;
+			double yaw = MathHelper.getYaw(dx, dy, store.getYaw(receiver));
+			volumes[i] = new VolumeResult(slope * Math.sqrt(MathHelper.getSquaredDistance(dx, dy, dz)) + 1, MathHelper.getLeftVolume(yaw), MathHelper.getRightVolume(yaw));
+		}
+	}
+
+	/**
+	 * @return The radius if {@link #isDefaultDispatch()} returns true, {@link Double#POSITIVE_INFINITY} otherwise since the volume
+	 *         calculated by another implementation of {@link #dispatch(IPlayer, IPlayer)} may not be null beyond the radius.
+	 */
+	@Override
+	public double getAudibleRange() {
+		return isDefaultDispatch() ? getRadius() : Double.POSITIVE_INFINITY;
 	}
 
 	@Override
@@ -46,6 +86,17 @@ public class LinearCircularSoundModifier extends SoundModifier {
 		return new LinearCircularSoundModifier(this);
 	}
 
+	/**
+	 * Sub classes that override the method {@link #dispatch(IPlayer, IPlayer)} are calculated one receiver after the other by the
+	 * overridden method and are not limited to the radius. A sub class that keeps the volumes of this sound modifier can override this
+	 * method and return true in order to use the batch calculation.
+	 * 
+	 * @return True if the volumes are the ones calculated by this class, false by default for sub classes.
+	 */
+	protected boolean isDefaultDispatch() {
+		return getClass() == LinearCircularSoundModifier.class;
+	}
+
 	/**
 	 * @return The radius beyond which two players can no longer talk together.
 	 */
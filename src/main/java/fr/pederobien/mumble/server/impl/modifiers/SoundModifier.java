@@ -1,5 +1,6 @@
 package fr.pederobien.mumble.server.impl.modifiers;
 
+import fr.pederobien.mumble.server.impl.PositionStore;
 import fr.pederobien.mumble.server.interfaces.IChannel;
 import fr.pederobien.mumble.server.interfaces.IParameter;
 import fr.pederobien.mumble.server.interfaces.IPlayer;
@@ -76,6 +77,23 @@ public class SoundModifier implements ISoundModifier {
 		return dispatch(transmitter, receiver);
 	}
 
+	/**
+	 * Calculate the volumes of the sample sent by the transmitter for several receivers at once. The default implementation calls
+	 * {@link #calculate(IPlayer, IPlayer)} for each receiver, sound modifiers should override this method in order to work directly
+	 * on the coordinates of the store.
+	 * 
+	 * @param store       The coordinates of the players of the channel.
+	 * @param transmitter The slot of the player currently speaking.
+	 * @param receivers   The slots of the players currently hearing.
+	 * @param count       The number of receivers to take into account.
+	 * @param volumes     The array in which the volume of the receiver at index i is written at index i.
+	 */
+	public void calculate(PositionStore store, int transmitter, int[] receivers, int count, VolumeResult[] volumes) {
+		IPlayer player = store.getPlayer(transmitter);
+		for (int i = 0; i < count; i++)
+			volumes[i] = calculate(player, store.getPlayer(receivers[i]));
+	}
+
 	@Override
 	public boolean equals(Object obj) {
 		if (this == obj)
@@ -0,0 +1,108 @@
+package fr.pederobien.mumble.server.impl.request;
+
+import java.util.Arrays;
+
+import fr.pederobien.mumble.server.interfaces.IParameter;
+import fr.pederobien.mumble.server.interfaces.IRangeParameter;
+import fr.pederobien.mumble.server.interfaces.ISoundModifier;
+
+public class PropertiesBuilder {
+	private Object[] properties;
+	private int size;
+
+	/**
+	 * Creates a builder that writes the properties of a message directly in an array. When the capacity is the exact number of
+	 * properties, the array given to the message factory is the array in which the properties have been written, without any copy.
+	 *
+	 * @param capacity The expected number of properties.
+	 */
+	public PropertiesBuilder(int capacity) {
+		properties = new Object[Math.max(1, capacity)];
+	}
+
+	/**
+	 * Appends the given property.
+	 *
+	 * @param property The property to add.
+	 *
+	 * @return This builder.
+	 */
+	public PropertiesBuilder add(Object property) {
+		if (size == properties.length)
+			properties = Arrays.copyOf(properties, size * 2);
+
+		properties[size++] = property;
+		return this;
+	}
+
+	/**
+	 * Appends the name of the given sound modifier, the number of parameters, and then for each parameter its name, type, default
+	 * value, value, range status and if it is a range parameter, its minimum and maximum values.
+	 *
+	 * @param modifier The sound modifier to add.
+	 *
+	 * @return This builder.
+	 */
+	public PropertiesBuilder addSoundModifier(ISoundModifier modifier) {
+		// Modifier's name
+		add(modifier.getName());
+
+		// Number of parameters
+		add(modifier.getParameters().size());
+
+		for (IParameter<?> parameter : modifier.getParameters()) {
+			// Parameter's name
+			add(parameter.getName());
+
+			// Parameter's type
+			add(parameter.getType());
+
+			// Parameter's default value
+			add(parameter.getDefaultValue());
+
+			// Parameter's value
+			add(parameter.getValue());
+
+			// Parameter's range
+			boolean isRange = parameter instanceof IRangeParameter<?>;
+			add(isRange);
+
+			if (isRange) {
+				IRangeParameter<?> rangeParameter = (IRangeParameter<?>) parameter;
+
+				// Parameter's minimum value
+				add(rangeParameter.getMin());
+
+				// Parameter's maximum value
+				add(rangeParameter.getMax());
+			}
+		}
+		return this;
+	}
+
+	/**
+	 * @return The number of properties added to this builder.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return The properties added to this builder. The returned array must not be modified by this builder anymore.
+	 */
+	public Object[] toArray() {
+		return size == properties.length ? properties : Arrays.copyOf(properties, size);
+	}
+
+	/**
+	 * @param modifier The sound modifier whose the properties are counted.
+	 *
+	 * @return The number of properties written by {@link #addSoundModifier(ISoundModifier)} for the given sound modifier.
+	 */
+	public static int sizeOf(ISoundModifier modifier) {
+		int size = 2;
+		for (IParameter<?> parameter : modifier.getParameters())
+			size += parameter instanceof IRangeParameter<?> ? 7 : 5;
+		return size;
+	}
+}
@@ -1,6 +1,6 @@
 package fr.pederobien.mumble.server.impl.request;
 
-import java.util.HashMap;
+import java.util.EnumMap;
 import java.util.Map;
 import java.util.function.Function;
 
@@ -27,7 +27,7 @@ public abstract class RequestManager implements IRequestManager {
 	public RequestManager(IMumbleServer server, float version) {
 		this.server = server;
 		this.version = version;
-		requests = new HashMap<MumbleIdentifier, Function<RequestReceivedHolder, IMumbleMessage>>();
+		requests = new EnumMap<MumbleIdentifier, Function<RequestReceivedHolder, IMumbleMessage>>(MumbleIdentifier.class);
 	}
 
 	@Override
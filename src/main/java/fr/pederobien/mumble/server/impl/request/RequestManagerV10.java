@@ -4,6 +4,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Predicate;
 
 import fr.pederobien.mumble.common.impl.MumbleErrorCode;
 import fr.pederobien.mumble.common.impl.MumbleIdentifier;
@@ -64,6 +65,7 @@ import fr.pederobien.mumble.server.interfaces.IRangeParameter;
 import fr.pederobien.mumble.server.interfaces.ISoundModifier;
 
 public class RequestManagerV10 extends RequestManager {
+	private ServerConfigurationCache configuration;
 
 	/**
 	 * Creates a request management in order to modify the given server and answer to remote requests.
@@ -72,6 +74,7 @@ public class RequestManagerV10 extends RequestManager {
 	 */
 	public RequestManagerV10(IMumbleServer server) {
 		super(server, 1.0f);
+		configuration = new ServerConfigurationCache(server);
 
 		// Server messages
 		getRequests().put(MumbleIdentifier.GET_FULL_SERVER_CONFIGURATION, holder -> getFullServerConfiguration((GetFullServerConfigurationV10) holder.getRequest()));
@@ -132,46 +135,7 @@ public class RequestManagerV10 extends RequestManager {
 
 	@Override
 	public IMumbleMessage onChannelAdd(IChannel channel) {
-		List<Object> informations = new ArrayList<Object>();
-
-		// Channel's name
-		informations.add(channel.getName());
-
-		// Modifier's name
-		informations.add(channel.getSoundModifier().getName());
-
-		// Number of parameters
-		informations.add(channel.getSoundModifier().getParameters().size());
-
-		for (IParameter<?> parameter : channel.getSoundModifier().getParameters()) {
-			// Parameter's name
-			informations.add(parameter.getName());
-
-			// Parameter's type
-			informations.add(parameter.getType());
-
-			// Parameter's default value
-			informations.add(parameter.getDefaultValue());
-
-			// Parameter's value
-			informations.add(parameter.getValue());
-
-			// Parameter's range
-			boolean isRange = parameter instanceof IRangeParameter<?>;
-			informations.add(isRange);
-
-			if (isRange) {
-				IRangeParameter<?> rangeParameter = (IRangeParameter<?>) parameter;
-
-				// Parameter's minimum value
-				informations.add(rangeParameter.getMin());
-
-				// Parameter's maximum value
-				informations.add(rangeParameter.getMax());
-			}
-		}
-
-		return create(getVersion(), MumbleIdentifier.REGISTER_CHANNEL_ON_THE_SERVER, informations.toArray());
+		return create(getVersion(), MumbleIdentifier.REGISTER_CHANNEL_ON_THE_SERVER, getChannelProperties(channel));
 	}
 
 	@Override
@@ -399,45 +363,7 @@ public class RequestManagerV10 extends RequestManager {
 
 	@Override
 	public IMumbleMessage onChannelSoundModifierChange(IChannel channel) {
-		List<Object> informations = new ArrayList<Object>();
-
-		// Channel's name
-		informations.add(channel.getName());
-
-		// Modifier's name
-		informations.add(channel.getSoundModifier().getName());
-
-		// Number of parameters
-		informations.add(channel.getSoundModifier().getParameters().size());
-		for (IParameter<?> parameter : channel.getSoundModifier().getParameters()) {
-			// Parameter's name
-			informations.add(parameter.getName());
-
-			// Parameter's type
-			informations.add(parameter.getType());
-
-			// Parameter's default value
-			informations.add(parameter.getDefaultValue());
-
-			// Parameter's value
-			informations.add(parameter.getValue());
-
-			// Parameter's range
-			boolean isRange = parameter instanceof IRangeParameter<?>;
-			informations.add(isRange);
-
-			if (isRange) {
-				IRangeParameter<?> rangeParameter = (IRangeParameter<?>) parameter;
-
-				// Parameter's minimum value
-				informations.add(rangeParameter.getMin());
-
-				// Parameter's maximum value
-				informations.add(rangeParameter.getMax());
-			}
-		}
-
-		return create(getVersion(), MumbleIdentifier.SET_CHANNEL_SOUND_MODIFIER, informations.toArray());
+		return create(getVersion(), MumbleIdentifier.SET_CHANNEL_SOUND_MODIFIER, getChannelProperties(channel));
 	}
 
 	@Override
@@ -453,147 +379,7 @@ public class RequestManagerV10 extends RequestManager {
 	 * @return The server answer.
 	 */
 	private IMumbleMessage getFullServerConfiguration(GetFullServerConfigurationV10 request) {
-		List<Object> informations = new ArrayList<Object>();
-
-		List<IPlayer> players = getServer().getPlayers().toList();
-
-		// Number of players
-		informations.add(players.size());
-
-		for (IPlayer player : players) {
-			// Player's name
-			informations.add(player.getName());
-
-			// Player's identifier
-			informations.add(player.getIdentifier());
-
-			// Player's online status
-			informations.add(player.isOnline());
-
-			// Player's game address
-			informations.add(player.getGameAddress().getAddress().getHostAddress());
-
-			// Player's game port
-			informations.add(player.getGameAddress().getPort());
-
-			// Player's administrator status
-			informations.add(player.isAdmin());
-
-			// Player's mute status
-			informations.add(player.isMute());
-
-			// Player's deafen status
-			informations.add(player.isDeafen());
-
-			// Player's X coordinate
-			informations.add(player.getPosition().getX());
-
-			// Player's Y coordinate
-			informations.add(player.getPosition().getY());
-
-			// Player's Z coordinate
-			informations.add(player.getPosition().getZ());
-
-			// Player's yaw angle
-			informations.add(player.getPosition().getYaw());
-
-			// Player's pitch angle
-			informations.add(player.getPosition().getPitch());
-
-		}
-
-		// Number of sound modifier
-		List<ISoundModifier> modifiers = SoundManager.toList();
-		informations.add(modifiers.size());
-
-		// Modifier informations
-		for (ISoundModifier modifier : modifiers) {
-			// Modifier's name
-			informations.add(modifier.getName());
-
-			// Number of parameter
-			informations.add(modifier.getParameters().size());
-
-			// Modifier's parameter
-			for (IParameter<?> parameter : modifier.getParameters()) {
-				// Parameter's name
-				informations.add(parameter.getName());
-
-				// Parameter's type
-				informations.add(parameter.getType());
-
-				// Parameter's default value
-				informations.add(parameter.getDefaultValue());
-
-				// Parameter's value
-				informations.add(parameter.getValue());
-
-				// Parameter's range
-				boolean isRange = parameter instanceof RangeParameter;
-				informations.add(isRange);
-
-				if (isRange) {
-					IRangeParameter<?> rangeParameter = (IRangeParameter<?>) parameter;
-					informations.add(rangeParameter.getMin());
-					informations.add(rangeParameter.getMax());
-				}
-			}
-		}
-
-		// Number of channels
-		informations.add(getServer().getChannels().toList().size());
-		for (IChannel channel : getServer().getChannels()) {
-			// Channel name
-			informations.add(channel.getName());
-
-			// Channel's sound modifier name
-			informations.add(channel.getSoundModifier().getName());
-
-			// Number of parameters
-			informations.add(channel.getSoundModifier().getParameters().size());
-
-			for (IParameter<?> parameter : channel.getSoundModifier().getParameters()) {
-				// Parameter's name
-				informations.add(parameter.getName());
-
-				// Parameter's type
-				informations.add(parameter.getType());
-
-				// Parameter's default value
-				informations.add(parameter.getDefaultValue());
-
-				// Parameter's value
-				informations.add(parameter.getValue());
-
-				// Parameter's range
-				boolean isRange = parameter instanceof RangeParameter;
-				informations.add(isRange);
-
-				if (isRange) {
-					IRangeParameter<?> rangeParameter = (IRangeParameter<?>) parameter;
-					informations.add(rangeParameter.getMin());
-					informations.add(rangeParameter.getMax());
-				}
-			}
-
-			// Number of players
-			informations.add(channel.getPlayers().toList().size());
-
-			for (IPlayer player : channel.getPlayers()) {
-				// Player's name
-				informations.add(player.getName());
-
-				// Player's mute status
-				informations.add(player.isMute());
-
-				// Player's deafen
-				informations.add(player.isDeafen());
-
-				// Player's muteBy status
-				informations.add(false);
-			}
-		}
-		return answer(getVersion(), request, informations.toArray());
+		return answer(getVersion(), request, configuration.getFullConfiguration());
 	}
 
 	/**
@@ -654,99 +440,8 @@ public class RequestManagerV10 extends RequestManager {
 			informations.add(mainPlayer.getPosition().getPitch());
 		}
 
-		// Number of sound modifier
-		List<ISoundModifier> modifiers = SoundManager.toList();
-		informations.add(modifiers.size());
-
-		// Modifier informations
-		for (ISoundModifier modifier : modifiers) {
-			// Modifier's name
-			informations.add(modifier.getName());
-
-			// Number of parameter
-			informations.add(modifier.getParameters().size());
-
-			// Modifier's parameter
-			for (IParameter<?> parameter : modifier.getParameters()) {
-				// Parameter's name
-				informations.add(parameter.getName());
-
-				// Parameter's type
-				informations.add(parameter.getType());
-
-				// Parameter's default value
-				informations.add(parameter.getDefaultValue());
-
-				// Parameter's value
-				informations.add(parameter.getValue());
-
-				// Parameter's range
-				boolean isRange = parameter instanceof RangeParameter;
-				informations.add(isRange);
-
-				if (isRange) {
-					IRangeParameter<?> rangeParameter = (IRangeParameter<?>) parameter;
-					informations.add(rangeParameter.getMin());
-					informations.add(rangeParameter.getMax());
-				}
-			}
-		}
-
-		// Number of channels
-		informations.add(getServer().getChannels().toList().size());
-		for (IChannel channel : getServer().getChannels()) {
-			// Channel name
-			informations.add(channel.getName());
-
-			// Channel's sound modifier name
-			informations.add(channel.getSoundModifier().getName());
-
-			// Number of parameters
-			informations.add(channel.getSoundModifier().getParameters().size());
-
-			for (IParameter<?> parameter : channel.getSoundModifier().getParameters()) {
-				// Parameter's name
-				informations.add(parameter.getName());
-
-				// Parameter's type
-				informations.add(parameter.getType());
-
-				// Parameter's default value
-				informations.add(parameter.getDefaultValue());
-
-				// Parameter's value
-				informations.add(parameter.getValue());
-
-				// Parameter's range
-				boolean isRange = parameter instanceof RangeParameter;
-				informations.add(isRange);
-
-				if (isRange) {
-					IRangeParameter<?> rangeParameter = (IRangeParameter<?>) parameter;
-					informations.add(rangeParameter.getMin());
-					informations.add(rangeParameter.getMax());
-				}
-			}
-
-			// Number of players
-			informations.add(channel.getPlayers().toList().size());
-
-			for (IPlayer player : channel.getPlayers()) {
-				// Player's name
-				informations.add(player.getName());
-
-				// Player's mute status
-				informations.add(player.isMute());
-
-				// Player's deafen status
-				informations.add(player.isDeafen());
-
-				// Case when the connection corresponds to a player connection -> Needs to check if player is mute by the client player.
-				result = runIfInstanceof(holder, PlayerMumbleClient.class, client -> player.isMuteBy(client.getPlayer()));
-				informations.add(result.getHasRun() ? result.getResult() : false);
-			}
-		}
-		return answer(getVersion(), holder.getRequest(), informations.toArray());
+		Object[] properties = configuration.getConfiguration(informations, getMuteByFunction(holder));
+		return answer(getVersion(), holder.getRequest(), properties);
 	}
 
 	/**
@@ -1215,64 +910,26 @@ public class RequestManagerV10 extends RequestManager {
 	 */
 	private IMumbleMessage getChannelsInfo(RequestReceivedHolder holder) {
 		GetChannelsInfoV10 request = (GetChannelsInfoV10) holder.getRequest();
-		List<Object> informations = new ArrayList<Object>();
-
-		// Number of channels
-		informations.add(getServer().getChannels().toList().size());
-
-		for (IChannel channel : getServer().getChannels()) {
-			// Channel's name
-			informations.add(channel.getName());
-
-			// Modifier's name
-			informations.add(channel.getSoundModifier().getName());
-
-			// Number of parameters
-			informations.add(channel.getSoundModifier().getParameters().size());
-
-			for (IParameter<?> parameter : channel.getSoundModifier().getParameters()) {
-				// Parameter's name
-				informations.add(parameter.getName());
-
-				// Parameter's type
-				informations.add(parameter.getType());
-
-				// Parameter's default value
-				informations.add(parameter.getDefaultValue());
-
-				// Parameter's value
-				informations.add(parameter.getValue());
-
-				// Parameter's range
-				boolean isRange = parameter instanceof RangeParameter;
-				informations.add(isRange);
-
-				if (isRange) {
-					IRangeParameter<?> rangeParameter = (IRangeParameter<?>) parameter;
-					informations.add(rangeParameter.getMin());
-					informations.add(rangeParameter.getMax());
-				}
-			}
-
-			// Number of players
-			informations.add(channel.getPlayers().toList().size());
+		List<IChannel> channels = getServer().getChannels().toList();
+		List<List<IPlayer>> players = new ArrayList<List<IPlayer>>(channels.size());
+
+		int size = 1;
+		for (IChannel channel : channels) {
+			List<IPlayer> channelPlayers = channel.getPlayers().toList();
+			players.add(channelPlayers);
+			size += 2 + PropertiesBuilder.sizeOf(channel.getSoundModifier()) + 4 * channelPlayers.size();
+		}
 
-			for (IPlayer player : channel.getPlayers()) {
-				// Player's name
-				informations.add(player.getName());
+		PropertiesBuilder builder = new PropertiesBuilder(size);
+		Predicate<IPlayer> isMuteBy = getMuteByFunction(holder);
 
-				// Player's mute
-				informations.add(player.isMute());
+		// Number of channels
+		builder.add(channels.size());
 
-				// Player's deafen
-				informations.add(player.isDeafen());
+		for (int i = 0; i < channels.size(); i++)
+			addChannel(builder, channels.get(i), players.get(i), isMuteBy);
 
-				// Case when the connection corresponds to a player connection -> Needs to check if player is mute by the client player.
-				RunResult result = runIfInstanceof(holder, PlayerMumbleClient.class, client -> player.isMuteBy(client.getPlayer()));
-				informations.add(result.getHasRun() ? result.getResult() : false);
-			}
-		}
-		return answer(getVersion(), request, informations.toArray());
+		return answer(getVersion(), request, builder.toArray());
 	}
 
 	/**
@@ -1284,63 +941,15 @@ public class RequestManagerV10 extends RequestManager {
 	 */
 	private IMumbleMessage getChannelInfo(RequestReceivedHolder holder) {
 		GetChannelInfoV10 request = (GetChannelInfoV10) holder.getRequest();
-		List<Object> informations = new ArrayList<Object>();
 
 		Optional<IChannel> optChannel = getServer().getChannels().get(request.getChannelName());
 		if (!optChannel.isPresent())
 			return answer(getVersion(), request, MumbleErrorCode.CHANNEL_NOT_FOUND);
 
-		// Channel's name
-		informations.add(optChannel.get().getName());
-
-		// Modifier's name
-		informations.add(optChannel.get().getSoundModifier().getName());
-
-		// Number of parameters
-		informations.add(optChannel.get().getSoundModifier().getParameters().size());
-
-		for (IParameter<?> parameter : optChannel.get().getSoundModifier().getParameters()) {
-			// Parameter's name
-			informations.add(parameter.getName());
-
-			// Parameter's type
-			informations.add(parameter.getType());
-
-			// Parameter's default value
-			informations.add(parameter.getDefaultValue());
-
-			// Parameter's value
-			informations.add(parameter.getValue());
-
-			// Parameter's range
-			boolean isRange = parameter instanceof RangeParameter;
-			informations.add(isRange);
-
-			if (isRange) {
-				IRangeParameter<?> rangeParameter = (IRangeParameter<?>) parameter;
-				informations.add(rangeParameter.getMin());
-				informations.add(rangeParameter.getMax());
-			}
-		}
-
-		// Number of players
-		informations.add(optChannel.get().getPlayers().toList().size());
-
-		for (IPlayer player : optChannel.get().getPlayers()) {
-			// Player's name
-			informations.add(player.getName());
-
-			// Player's mute
-			informations.add(player.isMute());
-
-			// Player's deafen
-			informations.add(player.isDeafen());
-
-			// Case when the connection corresponds to a player connection -> Needs to check if player is mute by the client player.
-			RunResult result = runIfInstanceof(holder, PlayerMumbleClient.class, client -> player.isMuteBy(client.getPlayer()));
-			informations.add(result.getHasRun() ? result.getResult() : false);
-		}
-		return answer(getVersion(), request, informations.toArray());
+		List<IPlayer> players = optChannel.get().getPlayers().toList();
+		PropertiesBuilder builder = new PropertiesBuilder(2 + PropertiesBuilder.sizeOf(optChannel.get().getSoundModifier()) + 4 * players.size());
+		addChannel(builder, optChannel.get(), players, getMuteByFunction(holder));
+		return answer(getVersion(), request, builder.toArray());
 	}
 
 	/**
@@ -1800,4 +1409,69 @@ public class RequestManagerV10 extends RequestManager {
 
 		return parameterList;
 	}
+
+	/**
+	 * Get the properties of a channel: its name, the properties of its sound modifier.
+	 * 
+	 * @param channel The channel whose the properties are returned.
+	 * 
+	 * @return An array that contains the properties of the channel.
+	 */
+	private Object[] getChannelProperties(IChannel channel) {
+		ISoundModifier modifier = channel.getSoundModifier();
+		PropertiesBuilder builder = new PropertiesBuilder(1 + PropertiesBuilder.sizeOf(modifier));
+
+		// Channel's name
+		builder.add(channel.getName());
+
+		return builder.addSoundModifier(modifier).toArray();
+	}
+
+	/**
+	 * Appends the name of the channel, the properties of its sound modifier, the number of players, and then for each player its name,
+	 * mute status, deafen status and mute by status.
+	 * 
+	 * @param builder  The builder in which the properties are written.
+	 * @param channel  The channel to add.
+	 * @param players  The players registered in the channel.
+	 * @param isMuteBy The function that returns the mute by status of a channel player for the requester.
+	 */
+	private void addChannel(PropertiesBuilder builder, IChannel channel, List<IPlayer> players, Predicate<IPlayer> isMuteBy) {
+		// Channel's name
+		builder.add(channel.getName());
+
+		builder.addSoundModifier(channel.getSoundModifier());
+
+		// Number of players
+		builder.add(players.size());
+
+		for (IPlayer player : players) {
+			// Player's name
+			builder.add(player.getName());
+
+			// Player's mute
+			builder.add(player.isMute());
+
+			// Player's deafen
+			builder.add(player.isDeafen());
+
+			// Player's muteBy status
+			builder.add(isMuteBy.test(player));
+		}
+	}
+
+	/**
+	 * @param holder The holder that contains the connection that received the request and the request itself.
+	 * 
+	 * @return The function that returns the mute by status of a player for the player of the connection. If the connection is not a
+	 *         player connection, no player is muted.
+	 */
+	private Predicate<IPlayer> getMuteByFunction(RequestReceivedHolder holder) {
+		// Case when the connection corresponds to a player connection -> Needs to check if player is mute by the client player.
+		if (!(holder.getConnection() instanceof PlayerMumbleClient))
+			return player -> false;
+
+		IPlayer clientPlayer = ((PlayerMumbleClient) holder.getConnection()).getPlayer();
+		return player -> player.isMuteBy(clientPlayer);
+	}
 }
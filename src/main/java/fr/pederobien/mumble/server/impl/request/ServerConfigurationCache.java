@@ -0,0 +1,477 @@
+package fr.pederobien.mumble.server.impl.request;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+import fr.pederobien.mumble.server.event.MumbleChannelNameChangePostEvent;
+import fr.pederobien.mumble.server.event.MumbleChannelSoundModifierChangePostEvent;
+import fr.pederobien.mumble.server.event.MumbleParameterMaxValueChangePostEvent;
+import fr.pederobien.mumble.server.event.MumbleParameterMinValueChangePostEvent;
+import fr.pederobien.mumble.server.event.MumbleParameterValueChangePostEvent;
+import fr.pederobien.mumble.server.event.MumblePlayerAdminChangePostEvent;
+import fr.pederobien.mumble.server.event.MumblePlayerGameAddressChangePostEvent;
+import fr.pederobien.mumble.server.event.MumblePlayerKickPostEvent;
+import fr.pederobien.mumble.server.event.MumblePlayerListPlayerAddPostEvent;
+import fr.pederobien.mumble.server.event.MumblePlayerListPlayerRemovePostEvent;
+import fr.pederobien.mumble.server.event.MumblePlayerNameChangePostEvent;
+import fr.pederobien.mumble.server.event.MumblePlayerOnlineChangePostEvent;
+import fr.pederobien.mumble.server.event.MumbleServerChannelAddPostEvent;
+import fr.pederobien.mumble.server.event.MumbleServerChannelRemovePostEvent;
+import fr.pederobien.mumble.server.event.MumbleServerClosePostEvent;
+import fr.pederobien.mumble.server.event.MumbleServerPlayerAddPostEvent;
+import fr.pederobien.mumble.server.event.MumbleServerPlayerRemovePostEvent;
+import fr.pederobien.mumble.server.event.MumbleSoundModifierRegisterPostEvent;
+import fr.pederobien.mumble.server.event.MumbleSoundModifierUnregisterPostEvent;
+import fr.pederobien.mumble.server.impl.SoundManager;
+import fr.pederobien.mumble.server.interfaces.IChannel;
+import fr.pederobien.mumble.server.interfaces.IMumbleServer;
+import fr.pederobien.mumble.server.interfaces.IParameter;
+import fr.pederobien.mumble.server.interfaces.IPlayer;
+import fr.pederobien.mumble.server.interfaces.IPosition;
+import fr.pederobien.mumble.server.interfaces.ISoundModifier;
+import fr.pederobien.utils.event.EventHandler;
+import fr.pederobien.utils.event.EventManager;
+import fr.pederobien.utils.event.IEventListener;
+
+public class ServerConfigurationCache implements IEventListener {
+	private IMumbleServer server;
+	private volatile Snapshot snapshot;
+	private AtomicLong revision;
+	private Lock lock;
+
+	/**
+	 * Creates a cache for the properties of the server configuration answers. The players, sound modifiers and channels sections are
+	 * built once and reused until a player, a channel, a parameter or a sound modifier changes. The values that change often (mute
+	 * status, deafen status and coordinates) and the values that depend on the requester (mute by status) are written in a copy of the
+	 * cached sections for each request.
+	 *
+	 * @param server The server whose the configuration is cached.
+	 */
+	public ServerConfigurationCache(IMumbleServer server) {
+		this.server = server;
+		revision = new AtomicLong();
+		lock = new ReentrantLock(true);
+
+		EventManager.registerListener(this);
+	}
+
+	/**
+	 * Get the properties of the full server configuration: the players registered on the server, the registered sound modifiers and the
+	 * channels. No player is muted by the requester.
+	 *
+	 * @return An array that contains the properties of the full server configuration.
+	 */
+	public Object[] getFullConfiguration() {
+		Snapshot current = getSnapshot();
+		Object[] properties = new Object[current.players.length + current.modifiers.length + current.channels.length];
+
+		int index = 0;
+		index = copyPlayers(current, properties, index);
+		index = copy(current.modifiers, properties, index);
+		copyChannels(current, properties, index, player -> false);
+		return properties;
+	}
+
+	/**
+	 * Get the properties of the server configuration sent to a client: the given header, the registered sound modifiers and the
+	 * channels.
+	 *
+	 * @param header   The properties specific to the requester, added at the beginning of the array.
+	 * @param isMuteBy The function that returns the mute by status of a channel player for the requester.
+	 *
+	 * @return An array that contains the properties of the server configuration.
+	 */
+	public Object[] getConfiguration(List<Object> header, Predicate<IPlayer> isMuteBy) {
+		Snapshot current = getSnapshot();
+		Object[] properties = new Object[header.size() + current.modifiers.length + current.channels.length];
+
+		int index = 0;
+		for (Object property : header)
+			properties[index++] = property;
+
+		index = copy(current.modifiers, properties, index);
+		copyChannels(current, properties, index, isMuteBy);
+		return properties;
+	}
+
+	/**
+	 * Discards the cached sections, they will be built again for the next request.
+	 */
+	public void invalidate() {
+		revision.incrementAndGet();
+		snapshot = null;
+	}
+
+	@EventHandler
+	private void onServerClosing(MumbleServerClosePostEvent event) {
+		if (!event.getServer().equals(server))
+			return;
+
+		invalidate();
+		EventManager.unregisterListener(this);
+	}
+
+	@EventHandler
+	private void onPlayerAdd(MumbleServerPlayerAddPostEvent event) {
+		if (event.getList().getServer() != server)
+			return;
+
+		invalidate();
+	}
+
+	@EventHandler
+	private void onPlayerRemove(MumbleServerPlayerRemovePostEvent event) {
+		if (event.getList().getServer() != server)
+			return;
+
+		invalidate();
+	}
+
+	@EventHandler
+	private void onPlayerNameChange(MumblePlayerNameChangePostEvent event) {
+		if (event.getPlayer().getServer() != server)
+			return;
+
+		invalidate();
+	}
+
+	@EventHandler
+	private void onPlayerOnlineChange(MumblePlayerOnlineChangePostEvent event) {
+		if (event.getPlayer().getServer() != server)
+			return;
+
+		invalidate();
+	}
+
+	@EventHandler
+	private void onPlayerGameAddressChange(MumblePlayerGameAddressChangePostEvent event) {
+		if (event.getPlayer().getServer() != server)
+			return;
+
+		invalidate();
+	}
+
+	@EventHandler
+	private void onPlayerAdminChange(MumblePlayerAdminChangePostEvent event) {
+		if (event.getPlayer().getServer() != server)
+			return;
+
+		invalidate();
+	}
+
+	@EventHandler
+	private void onPlayerKick(MumblePlayerKickPostEvent event) {
+		if (event.getPlayer().getServer() != server)
+			return;
+
+		invalidate();
+	}
+
+	@EventHandler
+	private void onChannelAdd(MumbleServerChannelAddPostEvent event) {
+		if (event.getServer() != server)
+			return;
+
+		invalidate();
+	}
+
+	@EventHandler
+	private void onChannelRemove(MumbleServerChannelRemovePostEvent event) {
+		if (event.getServer() != server)
+			return;
+
+		invalidate();
+	}
+
+	@EventHandler
+	private void onChannelNameChange(MumbleChannelNameChangePostEvent event) {
+		if (event.getChannel().getServer() != server)
+			return;
+
+		invalidate();
+	}
+
+	@EventHandler
+	private void onChannelSoundModifierChange(MumbleChannelSoundModifierChangePostEvent event) {
+		if (event.getChannel().getServer() != server)
+			return;
+
+		invalidate();
+	}
+
+	@EventHandler
+	private void onChannelPlayerAdd(MumblePlayerListPlayerAddPostEvent event) {
+		if (event.getList().getChannel().getServer() != server)
+			return;
+
+		invalidate();
+	}
+
+	@EventHandler
+	private void onChannelPlayerRemove(MumblePlayerListPlayerRemovePostEvent event) {
+		if (event.getList().getChannel().getServer() != server)
+			return;
+
+		invalidate();
+	}
+
+	@EventHandler
+	private void onParameterValueChange(MumbleParameterValueChangePostEvent event) {
+		if (!isAttached(event.getParameter()))
+			return;
+
+		invalidate();
+	}
+
+	@EventHandler
+	private void onParameterMinValueChange(MumbleParameterMinValueChangePostEvent event) {
+		if (!isAttached(event.getParameter()))
+			return;
+
+		invalidate();
+	}
+
+	@EventHandler
+	private void onParameterMaxValueChange(MumbleParameterMaxValueChangePostEvent event) {
+		if (!isAttached(event.getParameter()))
+			return;
+
+		invalidate();
+	}
+
+	@EventHandler
+	private void onSoundModifierRegister(MumbleSoundModifierRegisterPostEvent event) {
+		// The registered sound modifiers are shared by all servers
+		invalidate();
+	}
+
+	@EventHandler
+	private void onSoundModifierUnregister(MumbleSoundModifierUnregisterPostEvent event) {
+		invalidate();
+	}
+
+	/**
+	 * Checks if the given parameter is part of the configuration of the server. The parameters of the registered sound modifiers,
+	 * that are not attached to a channel, are part of the configuration of all servers.
+	 *
+	 * @param parameter The parameter whose a property has changed.
+	 *
+	 * @return True if the cached sections should be discarded.
+	 */
+	private boolean isAttached(IParameter<?> parameter) {
+		ISoundModifier soundModifier = parameter.getSoundModifier();
+		if (soundModifier == null || soundModifier.getChannel() == null)
+			return true;
+
+		return soundModifier.getChannel().getServer() == server;
+	}
+
+	/**
+	 * Get the cached sections, or build them if they have been invalidated. The built sections are only published if no modification
+	 * happened while building them, otherwise they are only used for the current request.
+	 *
+	 * @return The cached sections.
+	 */
+	private Snapshot getSnapshot() {
+		Snapshot current = snapshot;
+		if (current != null)
+			return current;
+
+		lock.lock();
+		try {
+			current = snapshot;
+			if (current != null)
+				return current;
+
+			long expected = revision.get();
+			current = new Snapshot();
+			snapshot = current;
+
+			// A modification happened while building the sections
+			if (revision.get() != expected)
+				snapshot = null;
+			return current;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Copies the players section and writes the current mute status, deafen status and coordinates of each player.
+	 */
+	private int copyPlayers(Snapshot current, Object[] properties, int index) {
+		copy(current.players, properties, index);
+		for (int i = 0; i < current.playerSlots.length; i++) {
+			IPlayer player = current.playerRefs[i];
+			IPosition position = player.getPosition();
+			int slot = index + current.playerSlots[i];
+
+			// Player's mute status
+			properties[slot] = player.isMute();
+
+			// Player's deafen status
+			properties[slot + 1] = player.isDeafen();
+
+			// Player's X coordinate
+			properties[slot + 2] = position.getX();
+
+			// Player's Y coordinate
+			properties[slot + 3] = position.getY();
+
+			// Player's Z coordinate
+			properties[slot + 4] = position.getZ();
+
+			// Player's yaw angle
+			properties[slot + 5] = position.getYaw();
+
+			// Player's pitch angle
+			properties[slot + 6] = position.getPitch();
+		}
+		return index + current.players.length;
+	}
+
+	/**
+	 * Copies the channels section and writes the current mute status, deafen status and mute by status of each channel player.
+	 */
+	private int copyChannels(Snapshot current, Object[] properties, int index, Predicate<IPlayer> isMuteBy) {
+		copy(current.channels, properties, index);
+		for (int i = 0; i < current.memberSlots.length; i++) {
+			IPlayer player = current.memberRefs[i];
+			int slot = index + current.memberSlots[i];
+
+			// Player's mute status
+			properties[slot] = player.isMute();
+
+			// Player's deafen status
+			properties[slot + 1] = player.isDeafen();
+
+			// Player's muteBy status
+			properties[slot + 2] = isMuteBy.test(player);
+		}
+		return index + current.channels.length;
+	}
+
+	private int copy(Object[] source, Object[] properties, int index) {
+		System.arraycopy(source, 0, properties, index, source.length);
+		return index + source.length;
+	}
+
+	private class Snapshot {
+		private Object[] players, modifiers, channels;
+		private int[] playerSlots, memberSlots;
+		private IPlayer[] playerRefs, memberRefs;
+
+		private Snapshot() {
+			buildPlayers();
+			buildModifiers();
+			buildChannels();
+		}
+
+		private void buildPlayers() {
+			List<IPlayer> list = server.getPlayers().toList();
+			PropertiesBuilder builder = new PropertiesBuilder(1 + list.size() * 13);
+			playerSlots = new int[list.size()];
+			playerRefs = list.toArray(new IPlayer[list.size()]);
+
+			// Number of players
+			builder.add(list.size());
+
+			for (int i = 0; i < playerRefs.length; i++) {
+				IPlayer player = playerRefs[i];
+
+				// Player's name
+				builder.add(player.getName());
+
+				// Player's identifier
+				builder.add(player.getIdentifier());
+
+				// Player's online status
+				builder.add(player.isOnline());
+
+				// Player's game address
+				builder.add(player.getGameAddress().getAddress().getHostAddress());
+
+				// Player's game port
+				builder.add(player.getGameAddress().getPort());
+
+				// Player's administrator status
+				builder.add(player.isAdmin());
+
+				// Player's mute status, deafen status and coordinates, written for each request
+				playerSlots[i] = builder.size();
+				for (int j = 0; j < 7; j++)
+					builder.add(null);
+			}
+
+			players = builder.toArray();
+		}
+
+		private void buildModifiers() {
+			List<ISoundModifier> list = SoundManager.toList();
+			int size = 1;
+			for (ISoundModifier modifier : list)
+				size += PropertiesBuilder.sizeOf(modifier);
+
+			PropertiesBuilder builder = new PropertiesBuilder(size);
+
+			// Number of sound modifier
+			builder.add(list.size());
+
+			// Modifier informations
+			for (ISoundModifier modifier : list)
+				builder.addSoundModifier(modifier);
+
+			modifiers = builder.toArray();
+		}
+
+		private void buildChannels() {
+			List<IChannel> list = server.getChannels().toList();
+			List<List<IPlayer>> players = new ArrayList<List<IPlayer>>(list.size());
+
+			int size = 1, count = 0;
+			for (IChannel channel : list) {
+				List<IPlayer> channelPlayers = channel.getPlayers().toList();
+				players.add(channelPlayers);
+				size += 2 + PropertiesBuilder.sizeOf(channel.getSoundModifier()) + 4 * channelPlayers.size();
+				count += channelPlayers.size();
+			}
+
+			PropertiesBuilder builder = new PropertiesBuilder(size);
+			memberSlots = new int[count];
+			memberRefs = new IPlayer[count];
+
+			// Number of channels
+			builder.add(list.size());
+
+			int member = 0;
+			for (int i = 0; i < list.size(); i++) {
+				IChannel channel = list.get(i);
+
+				// Channel name
+				builder.add(channel.getName());
+
+				builder.addSoundModifier(channel.getSoundModifier());
+
+				// Number of players
+				builder.add(players.get(i).size());
+
+				for (IPlayer player : players.get(i)) {
+					// Player's name
+					builder.add(player.getName());
+
+					// Player's mute status, deafen status and muteBy status, written for each request
+					memberSlots[member] = builder.size();
+					memberRefs[member++] = player;
+					for (int j = 0; j < 3; j++)
+						builder.add(null);
+				}
+			}
+
+			channels = builder.toArray();
+		}
+	}
+}
@@ -1,13 +1,12 @@
 package fr.pederobien.mumble.server.impl.request;
 
-import java.util.NavigableMap;
-import java.util.TreeMap;
-import java.util.function.Function;
+import java.util.Arrays;
 
 import fr.pederobien.mumble.common.impl.MumbleErrorCode;
 import fr.pederobien.mumble.common.interfaces.IMumbleMessage;
 import fr.pederobien.mumble.server.impl.MumbleServerMessageFactory;
 import fr.pederobien.mumble.server.impl.RequestReceivedHolder;
+import fr.pederobien.mumble.server.impl.metrics.RequestMetrics;
 import fr.pederobien.mumble.server.interfaces.IChannel;
 import fr.pederobien.mumble.server.interfaces.IMumbleServer;
 import fr.pederobien.mumble.server.interfaces.IParameter;
@@ -17,175 +16,235 @@ import fr.pederobien.mumble.server.interfaces.IRequestManager;
 import fr.pederobien.mumble.server.interfaces.IServerRequestManager;
 
 public class ServerRequestManager implements IServerRequestManager {
-	private NavigableMap<Float, IRequestManager> managers;
+	private float[] versions;
+	private IRequestManager[] managers;
+	private RequestMetrics metrics;
 
 	/**
-	 * Creates a request management in order to modify the given server and answer to remote requests.
+	 * Creates a request management in order to modify the given server and answer to remote requests. The managers are stored in a
+	 * flat array sorted by version, so that resolving the manager of a message neither boxes the version nor allocates.
 	 * 
-	 * @param server The server to update.
+	 * @param server  The server to update.
+	 * @param metrics The registry in which the time spent to answer each request and its outcome are recorded.
 	 */
-	public ServerRequestManager(IMumbleServer server) {
-		managers = new TreeMap<Float, IRequestManager>();
+	public ServerRequestManager(IMumbleServer server, RequestMetrics metrics) {
+		this.metrics = metrics;
+		versions = new float[0];
+		managers = new IRequestManager[0];
 		register(new RequestManagerV10(server));
 	}
 
 	@Override
 	public float getVersion() {
-		return managers.lastKey();
+		return versions[versions.length - 1];
 	}
 
 	@Override
 	public boolean isSupported(float version) {
-		return managers.containsKey(version);
+		return getManager(version) != null;
 	}
 
 	@Override
 	public IMumbleMessage answer(RequestReceivedHolder holder) {
-		IRequestManager manager = managers.get(holder.getRequest().getHeader().getVersion());
+		long start = System.nanoTime();
+		IRequestManager manager = getManager(holder.getRequest().getHeader().getVersion());
 
+		IMumbleMessage answer;
 		if (manager == null)
-			return MumbleServerMessageFactory.answer(holder.getRequest(), MumbleErrorCode.INCOMPATIBLE_VERSION);
+			answer = MumbleServerMessageFactory.answer(holder.getRequest(), MumbleErrorCode.INCOMPATIBLE_VERSION);
+		else
+			answer = manager.answer(holder);
 
-		return manager.answer(holder);
+		MumbleErrorCode errorCode = answer == null ? MumbleErrorCode.UNEXPECTED_ERROR : answer.getHeader().getErrorCode();
+		metrics.record(holder.getRequest().getHeader().getIdentifier(), errorCode, System.nanoTime() - start);
+		return answer;
+	}
+
+	/**
+	 * @return The registry in which the time spent to answer each request and its outcome are recorded.
+	 */
+	public RequestMetrics getMetrics() {
+		return metrics;
 	}
 
 	@Override
 	public IMumbleMessage getCommunicationProtocolVersion() {
-		return findManagerAndApply(1.0f, manager -> manager.getCommunicationProtocolVersion());
+		IRequestManager manager = getManager(1.0f);
+		return manager == null ? null : manager.getCommunicationProtocolVersion();
 	}
 
 	@Override
 	public IMumbleMessage setCommunicationProtocolVersion(float version) {
-		return findManagerAndApply(1.0f, manager -> manager.setCommunicationProtocolVersion(version));
+		IRequestManager manager = getManager(1.0f);
+		return manager == null ? null : manager.setCommunicationProtocolVersion(version);
 	}
 
 	@Override
 	public IMumbleMessage onChannelAdd(float version, IChannel channel) {
-		return findManagerAndApply(version, manager -> manager.onChannelAdd(channel));
+		IRequestManager manager = getManager(version);
+		return manager == null ? null : manager.onChannelAdd(channel);
 	}
 
 	@Override
 	public IMumbleMessage onChannelRemove(float version, IChannel channel) {
-		return findManagerAndApply(version, manager -> manager.onChannelRemove(channel));
+		IRequestManager manager = getManager(version);
+		return manager == null ? null : manager.onChannelRemove(channel);
 	}
 
 	@Override
 	public IMumbleMessage onChannelNameChange(float version, IChannel channel, String oldName) {
-		return findManagerAndApply(version, manager -> manager.onChannelNameChange(channel, oldName));
+		IRequestManager manager = getManager(version);
+		return manager == null ? null : manager.onChannelNameChange(channel, oldName);
 	}
 
 	@Override
 	public IMumbleMessage onServerPlayerAdd(float version, IPlayer player) {
-		return findManagerAndApply(version, manager -> manager.onServerPlayerAdd(player));
+		IRequestManager manager = getManager(version);
+		return manager == null ? null : manager.onServerPlayerAdd(player);
 	}
 
 	@Override
 	public IMumbleMessage onServerPlayerRemove(float version, String name) {
-		return findManagerAndApply(version, manager -> manager.onServerPlayerRemove(name));
+		IRequestManager manager = getManager(version);
+		return manager == null ? null : manager.onServerPlayerRemove(name);
 	}
 
 	@Override
 	public IMumbleMessage onPlayerInfoChanged(float version, IPlayer player) {
-		return findManagerAndApply(version, manager -> manager.onPlayerInfoChanged(player));
+		IRequestManager manager = getManager(version);
+		return manager == null ? null : manager.onPlayerInfoChanged(player);
 	}
 
 	@Override
 	public IMumbleMessage onPlayerNameChange(float version, String oldName, String newName) {
-		return findManagerAndApply(version, manager -> manager.onPlayerNameChange(oldName, newName));
+		IRequestManager manager = getManager(version);
+		return manager == null ? null : manager.onPlayerNameChange(oldName, newName);
 	}
 
 	@Override
 	public IMumbleMessage onPlayerOnlineChange(float version, IPlayer player) {
-		return findManagerAndApply(version, manager -> manager.onPlayerOnlineChange(player));
+		IRequestManager manager = getManager(version);
+		return manager == null ? null : manager.onPlayerOnlineChange(player);
 	}
 
 	@Override
 	public IMumbleMessage onPlayerGameAddressChange(float version, IPlayer player) {
-		return findManagerAndApply(version, manager -> manager.onPlayerGameAddressChange(player));
+		IRequestManager manager = getManager(version);
+		return manager == null ? null : manager.onPlayerGameAddressChange(player);
 	}
 
 	@Override
 	public IMumbleMessage onPlayerAdminChange(float version, IPlayer player) {
-		return findManagerAndApply(version, manager -> manager.onPlayerAdminChange(player));
+		IRequestManager manager = getManager(version);
+		return manager == null ? null : manager.onPlayerAdminChange(player);
 	}
 
 	@Override
 	public IMumbleMessage onPlayerMuteChange(float version, IPlayer player) {
-		return findManagerAndApply(version, manager -> manager.onPlayerMuteChange(player));
+		IRequestManager manager = getManager(version);
+		return manager == null ? null : manager.onPlayerMuteChange(player);
 	}
 
 	@Override
 	public IMumbleMessage onPlayerMuteByChange(float version, IPlayer target, IPlayer source) {
-		return findManagerAndApply(version, manager -> manager.onPlayerMuteByChange(target, source));
+		IRequestManager manager = getManager(version);
+		return manager == null ? null : manager.onPlayerMuteByChange(target, source);
 	}
 
 	@Override
 	public IMumbleMessage onPlayerDeafenChange(float version, IPlayer player) {
-		return findManagerAndApply(version, manager -> manager.onPlayerDeafenChange(player));
+		IRequestManager manager = getManager(version);
+		return manager == null ? null : manager.onPlayerDeafenChange(player);
 	}
 
 	@Override
 	public IMumbleMessage onPlayerKick(float version, IPlayer kicked, IPlayer kicking) {
-		return findManagerAndApply(version, manager -> manager.onPlayerKick(kicked, kicking));
+		IRequestManager manager = getManager(version);
+		return manager == null ? null : manager.onPlayerKick(kicked, kicking);
 	}
 
 	@Override
 	public IMumbleMessage onPlayerPositionChange(float version, IPlayer player) {
-		return findManagerAndApply(version, manager -> manager.onPlayerPositionChange(player));
+		IRequestManager manager = getManager(version);
+		return manager == null ? null : manager.onPlayerPositionChange(player);
 	}
 
 	@Override
 	public IMumbleMessage onChannelPlayerAdd(float version, IChannel channel, IPlayer player, boolean isMuteByMainPlayer) {
-		return findManagerAndApply(version, manager -> manager.onChannelPlayerAdd(channel, player, isMuteByMainPlayer));
+		IRequestManager manager = getManager(version);
+		return manager == null ? null : manager.onChannelPlayerAdd(channel, player, isMuteByMainPlayer);
 	}
 
 	@Override
 	public IMumbleMessage onChannelPlayerRemove(float version, IChannel channel, IPlayer player) {
-		return findManagerAndApply(version, manager -> manager.onChannelPlayerRemove(channel, player));
+		IRequestManager manager = getManager(version);
+		return manager == null ? null : manager.onChannelPlayerRemove(channel, player);
 	}
 
 	@Override
 	public IMumbleMessage onParameterValueChange(float version, IParameter<?> parameter) {
-		return findManagerAndApply(version, manager -> manager.onParameterValueChange(parameter));
+		IRequestManager manager = getManager(version);
+		return manager == null ? null : manager.onParameterValueChange(parameter);
 	}
 
 	@Override
 	public IMumbleMessage onParameterMinValueChange(float version, IRangeParameter<?> parameter) {
-		return findManagerAndApply(version, manager -> manager.onParameterMinValueChange(parameter));
+		IRequestManager manager = getManager(version);
+		return manager == null ? null : manager.onParameterMinValueChange(parameter);
 	}
 
 	@Override
 	public IMumbleMessage onParameterMaxValueChange(float version, IRangeParameter<?> parameter) {
-		return findManagerAndApply(version, manager -> manager.onParameterMaxValueChange(parameter));
+		IRequestManager manager = getManager(version);
+		return manager == null ? null : manager.onParameterMaxValueChange(parameter);
 	}
 
 	@Override
 	public IMumbleMessage onChannelSoundModifierChange(float version, IChannel channel) {
-		return findManagerAndApply(version, manager -> manager.onChannelSoundModifierChange(channel));
+		IRequestManager manager = getManager(version);
+		return manager == null ? null : manager.onChannelSoundModifierChange(channel);
 	}
 
 	@Override
 	public IMumbleMessage onGamePortCheck(float version, int port) {
-		return findManagerAndApply(version, manager -> manager.onGamePortCheck(port));
+		IRequestManager manager = getManager(version);
+		return manager == null ? null : manager.onGamePortCheck(port);
 	}
 
 	private void register(IRequestManager manager) {
-		managers.put(manager.getVersion(), manager);
+		int index = Arrays.binarySearch(versions, manager.getVersion());
+		if (index >= 0) {
+			managers[index] = manager;
+			return;
+		}
+
+		// Inserting the manager at its sorted position
+		int insertion = -index - 1;
+		float[] newVersions = new float[versions.length + 1];
+		IRequestManager[] newManagers = new IRequestManager[managers.length + 1];
+		System.arraycopy(versions, 0, newVersions, 0, insertion);
+		System.arraycopy(managers, 0, newManagers, 0, insertion);
+		newVersions[insertion] = manager.getVersion();
+		newManagers[insertion] = manager;
+		System.arraycopy(versions, insertion, newVersions, insertion + 1, versions.length - insertion);
+		System.arraycopy(managers, insertion, newManagers, insertion + 1, managers.length - insertion);
+
+		versions = newVersions;
+		managers = newManagers;
 	}
 
 	/**
-	 * Apply the function of the manager associated to the given version if registered.
+	 * Get the manager associated to the given version. Only a few versions are supported, a linear scan is faster than any lookup
+	 * structure.
 	 * 
-	 * @param version  The version of the manager.
-	 * @param function The function to apply.
+	 * @param version The version of the manager.
 	 * 
-	 * @return The created message.
+	 * @return The manager associated to the version if registered, null otherwise.
 	 */
-	private IMumbleMessage findManagerAndApply(float version, Function<IRequestManager, IMumbleMessage> function) {
-		IRequestManager manager = managers.get(version);
-		if (manager == null)
-			return null;
-
-		return function.apply(manager);
+	private IRequestManager getManager(float version) {
+		for (int i = 0; i < versions.length; i++)
+			if (versions[i] == version)
+				return managers[i];
+		return null;
 	}
 }
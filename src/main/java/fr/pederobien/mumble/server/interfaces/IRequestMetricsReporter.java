@@ -0,0 +1,14 @@
+package fr.pederobien.mumble.server.interfaces;
+
+import java.util.List;
+
+public interface IRequestMetricsReporter {
+
+	/**
+	 * Publishes the statistics of the requests received by a server.
+	 *
+	 * @param server     The server that received the requests.
+	 * @param statistics The statistics of each request identifier received at least once.
+	 */
+	void report(IMumbleServer server, List<RequestStatistics> statistics);
+}
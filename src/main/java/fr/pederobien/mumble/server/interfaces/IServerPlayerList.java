@@ -37,6 +37,26 @@ public interface IServerPlayerList extends Iterable<IPlayer> {
 	 */
 	IPlayer add(String name, InetSocketAddress gameAddress, boolean isAdmin, double x, double y, double z, double yaw, double pitch);
 
+	/**
+	 * Updates the position of several players at once. The arrays must have the same length, the position at index i is the position
+	 * of the player whose the name is at index i. Names that does not correspond to a registered player are ignored. A single
+	 * MumbleServerPlayersPositionChangePreEvent and a single MumbleServerPlayersPositionChangePostEvent are thrown for all players
+	 * whose the position changes, no MumblePlayerPositionChangePostEvent is thrown. Listeners interested in the position of the
+	 * players should listen to both post events.
+	 * 
+	 * @param names The players name.
+	 * @param x     The players x coordinate.
+	 * @param y     The players y coordinate.
+	 * @param z     The players z coordinate.
+	 * @param yaw   The players yaw angle.
+	 * @param pitch The players pitch angle.
+	 * 
+	 * @return The list of players whose the position has changed.
+	 * 
+	 * @throws IllegalArgumentException If the arrays have not the same length.
+	 */
+	List<IPlayer> updatePositions(String[] names, double[] x, double[] y, double[] z, double[] yaw, double[] pitch);
+
 	/**
 	 * Removes the player associated to the given name.
 	 * 
@@ -31,6 +31,14 @@ public interface ISoundModifier extends Cloneable {
 	 */
 	void setSendFeedback(boolean sendFeedback);
 
+	/**
+	 * @return The distance beyond which a player cannot hear the transmitting player, {@link Double#POSITIVE_INFINITY} if the volume
+	 *         does not depend on the distance between players.
+	 */
+	default double getAudibleRange() {
+		return Double.POSITIVE_INFINITY;
+	}
+
 	/**
 	 * Calculate the left audio channel volume, the right audio channel volume and the signal global volume.
 	 * 
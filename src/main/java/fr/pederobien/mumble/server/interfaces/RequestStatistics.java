@@ -0,0 +1,88 @@
+package fr.pederobien.mumble.server.interfaces;
+
+import java.beans.ConstructorProperties;
+import java.util.Collections;
+import java.util.Map;
+
+public class RequestStatistics {
+	private String identifier;
+	private long count, meanLatency, medianLatency, p99Latency, maxLatency;
+	private Map<String, Long> outcomes;
+
+	/**
+	 * Creates a snapshot of the statistics of the requests with the same identifier.
+	 *
+	 * @param identifier    The identifier of the requests.
+	 * @param count         The number of answered requests.
+	 * @param meanLatency   The mean time, in nanoseconds, to answer a request.
+	 * @param medianLatency The median time, in nanoseconds, to answer a request.
+	 * @param p99Latency    The time, in nanoseconds, below which 99% of the requests have been answered.
+	 * @param maxLatency    The maximum time, in nanoseconds, to answer a request.
+	 * @param outcomes      The number of requests per error code of the answer, refused requests included.
+	 */
+	@ConstructorProperties({ "identifier", "count", "meanLatency", "medianLatency", "p99Latency", "maxLatency", "outcomes" })
+	public RequestStatistics(String identifier, long count, long meanLatency, long medianLatency, long p99Latency, long maxLatency, Map<String, Long> outcomes) {
+		this.identifier = identifier;
+		this.count = count;
+		this.meanLatency = meanLatency;
+		this.medianLatency = medianLatency;
+		this.p99Latency = p99Latency;
+		this.maxLatency = maxLatency;
+		this.outcomes = Collections.unmodifiableMap(outcomes);
+	}
+
+	/**
+	 * @return The identifier of the requests.
+	 */
+	public String getIdentifier() {
+		return identifier;
+	}
+
+	/**
+	 * @return The number of answered requests.
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * @return The mean time, in nanoseconds, to answer a request.
+	 */
+	public long getMeanLatency() {
+		return meanLatency;
+	}
+
+	/**
+	 * @return The median time, in nanoseconds, to answer a request.
+	 */
+	public long getMedianLatency() {
+		return medianLatency;
+	}
+
+	/**
+	 * @return The time, in nanoseconds, below which 99% of the requests have been answered.
+	 */
+	public long getP99Latency() {
+		return p99Latency;
+	}
+
+	/**
+	 * @return The maximum time, in nanoseconds, to answer a request.
+	 */
+	public long getMaxLatency() {
+		return maxLatency;
+	}
+
+	/**
+	 * @return The number of requests per error code of the answer, refused requests included.
+	 */
+	public Map<String, Long> getOutcomes() {
+		return outcomes;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s={count=%s, mean=%sns, p50=%sns, p99=%sns, max=%sns, outcomes=%s}", identifier, count, meanLatency, medianLatency, p99Latency,
+				maxLatency, outcomes);
+	}
+}
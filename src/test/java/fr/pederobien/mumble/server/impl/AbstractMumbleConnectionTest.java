@@ -0,0 +1,103 @@
+package fr.pederobien.mumble.server.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import fr.pederobien.mumble.common.interfaces.IMumbleMessage;
+import fr.pederobien.mumble.server.impl.AbstractMumbleConnection.HandshakeState;
+
+public class AbstractMumbleConnectionTest {
+	private TestMumbleServer server;
+	private FakeTcpConnection tcpConnection;
+	private TestConnection connection;
+
+	@BeforeEach
+	public void setup() {
+		server = new TestMumbleServer();
+		tcpConnection = new FakeTcpConnection();
+		connection = new TestConnection(server, tcpConnection);
+	}
+
+	@AfterEach
+	public void tearDown() {
+		server.dispose();
+	}
+
+	@Test
+	public void queuesRequestsWhileNegotiating() {
+		assertEquals(HandshakeState.NEGOTIATING, connection.getHandshakeState());
+
+		connection.receive(request());
+		connection.receive(request());
+
+		// The requests are not given to the request executor before the end of the negotiation
+		assertEquals(0, server.getRequestExecutor().getQueueDepth());
+		assertEquals(0, server.getRequestExecutor().getExecutedCount());
+		assertEquals(HandshakeState.NEGOTIATING, connection.getHandshakeState());
+		assertFalse(tcpConnection.isDisposed());
+	}
+
+	@Test
+	public void failsWhenTooManyRequestsAreQueued() {
+		for (int i = 0; i < AbstractMumbleConnection.MAX_PENDING_REQUESTS; i++)
+			connection.receive(request());
+		assertEquals(HandshakeState.NEGOTIATING, connection.getHandshakeState());
+
+		connection.receive(request());
+		assertEquals(HandshakeState.FAILED, connection.getHandshakeState());
+		assertTrue(tcpConnection.isDisposed());
+		assertEquals(1, connection.failures.get());
+
+		// Once failed, the requests are ignored and the failure is not reported again
+		connection.receive(request());
+		assertEquals(1, connection.failures.get());
+		assertEquals(0, server.getRequestExecutor().getExecutedCount());
+	}
+
+	@Test
+	public void failsWhenDeadlineIsReached() throws InterruptedException {
+		connection.startHandshake();
+
+		// The remote never answers to the request sent to get its versions of the communication protocol
+		assertTrue(FakeTcpConnection.await(() -> tcpConnection.getSent().size() == 1, AbstractMumbleConnection.HANDSHAKE_TIMEOUT));
+		assertTrue(FakeTcpConnection.await(() -> connection.getHandshakeState() == HandshakeState.FAILED, 2 * AbstractMumbleConnection.HANDSHAKE_TIMEOUT));
+		assertTrue(tcpConnection.isDisposed());
+		assertEquals(1, connection.failures.get());
+		assertEquals(0, connection.established.get());
+	}
+
+	private static IMumbleMessage request() {
+		return FakeTcpConnection.proxy(IMumbleMessage.class);
+	}
+
+	private static class TestConnection extends AbstractMumbleConnection {
+		private AtomicInteger established, failures;
+
+		private TestConnection(AbstractMumbleServer server, FakeTcpConnection connection) {
+			super(server, connection.getConnection());
+			established = new AtomicInteger();
+			failures = new AtomicInteger();
+		}
+
+		@Override
+		protected void onHandshakeEstablished() {
+			established.incrementAndGet();
+		}
+
+		@Override
+		protected void onHandshakeFailed() {
+			failures.incrementAndGet();
+		}
+
+		@Override
+		protected void onRequest(IMumbleMessage request) {
+		}
+	}
+}
@@ -0,0 +1,149 @@
+package fr.pederobien.mumble.server.impl;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+import fr.pederobien.communication.interfaces.ITcpConnection;
+import fr.pederobien.mumble.common.impl.MumbleCallbackMessage;
+import fr.pederobien.mumble.common.interfaces.IMumbleMessage;
+
+/**
+ * TCP connection that records the messages written on it instead of sending them to a remote. The connection is a dynamic proxy so
+ * that only the methods used by the server need to be handled, the other methods return the default value of their return type.
+ */
+class FakeTcpConnection implements InvocationHandler {
+	private ITcpConnection proxy;
+	private InetSocketAddress address;
+	private List<Object> sent;
+	private volatile boolean isDisposed;
+	private volatile Consumer<Object> onSend;
+
+	FakeTcpConnection() {
+		proxy = (ITcpConnection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { ITcpConnection.class }, this);
+		address = new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+		sent = new ArrayList<Object>();
+		onSend = message -> {
+		};
+	}
+
+	/**
+	 * @return A message that can be written on a connection, its content is not relevant for the tests.
+	 */
+	static MumbleCallbackMessage message() {
+		return new MumbleCallbackMessage(proxy(IMumbleMessage.class), null, AbstractMumbleConnection.DEFAULT_TIMEOUT);
+	}
+
+	/**
+	 * Waits until the given condition is verified.
+	 *
+	 * @param condition The condition to verify.
+	 * @param timeout   The maximum time to wait, in ms.
+	 *
+	 * @return True if the condition is verified, false if the timeout has been reached.
+	 */
+	static boolean await(BooleanSupplier condition, long timeout) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+		while (!condition.getAsBoolean()) {
+			if (System.nanoTime() > deadline)
+				return false;
+			Thread.sleep(10);
+		}
+		return true;
+	}
+
+	/**
+	 * @return The connection to give to the server.
+	 */
+	ITcpConnection getConnection() {
+		return proxy;
+	}
+
+	/**
+	 * @return A copy of the messages written on the connection, in the order they have been written.
+	 */
+	List<Object> getSent() {
+		synchronized (sent) {
+			return new ArrayList<Object>(sent);
+		}
+	}
+
+	/**
+	 * @return True if the connection has been disposed.
+	 */
+	boolean isDisposed() {
+		return isDisposed;
+	}
+
+	/**
+	 * Set the action run by the writer before a message is recorded. The action can throw an exception or block the writer.
+	 *
+	 * @param onSend The action to run.
+	 */
+	void setOnSend(Consumer<Object> onSend) {
+		this.onSend = onSend;
+	}
+
+	@Override
+	public Object invoke(Object proxy, Method method, Object[] args) {
+		switch (method.getName()) {
+		case "send":
+			onSend.accept(args[0]);
+			synchronized (sent) {
+				sent.add(args[0]);
+			}
+			return null;
+		case "isDisposed":
+			return isDisposed;
+		case "dispose":
+			isDisposed = true;
+			return null;
+		case "getAddress":
+			return address;
+		case "equals":
+			return proxy == args[0];
+		case "hashCode":
+			return System.identityHashCode(proxy);
+		case "toString":
+			return "FakeTcpConnection";
+		default:
+			return defaultValue(method.getReturnType());
+		}
+	}
+
+	/**
+	 * Creates an implementation of the given interface whose methods return the default value of their return type.
+	 *
+	 * @param type The interface to implement.
+	 *
+	 * @return The created implementation.
+	 */
+	static <T> T proxy(Class<T> type) {
+		return type.cast(Proxy.newProxyInstance(FakeTcpConnection.class.getClassLoader(), new Class<?>[] { type }, (proxy, method, args) -> {
+			switch (method.getName()) {
+			case "equals":
+				return proxy == args[0];
+			case "hashCode":
+				return System.identityHashCode(proxy);
+			default:
+				return defaultValue(method.getReturnType());
+			}
+		}));
+	}
+
+	private static Object defaultValue(Class<?> type) {
+		if (type.isArray())
+			return Array.newInstance(type.getComponentType(), 0);
+		if (!type.isPrimitive() || type == void.class)
+			return null;
+		return Array.get(Array.newInstance(type, 1), 0);
+	}
+}
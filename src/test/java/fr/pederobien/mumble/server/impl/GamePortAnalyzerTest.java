@@ -0,0 +1,130 @@
+package fr.pederobien.mumble.server.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import fr.pederobien.mumble.common.impl.MumbleCallbackMessage;
+
+public class GamePortAnalyzerTest {
+	private static final long TIMEOUT = 10000;
+	private static final int PORT = 12345;
+	private TestMumbleServer server;
+
+	@BeforeEach
+	public void setup() {
+		server = new TestMumbleServer();
+	}
+
+	@AfterEach
+	public void tearDown() {
+		server.dispose();
+	}
+
+	@Test
+	public void completesEmptyWithoutClients() {
+		CompletableFuture<Optional<PlayerMumbleClient>> result = new GamePortAnalyzer(server, Collections.emptyList()).checkPortByGame(PORT);
+
+		assertTrue(result.isDone());
+		assertFalse(result.join().isPresent());
+	}
+
+	@Test
+	public void completesEmptyWhenNoClientCanBeAsked() {
+		PlayerMumbleClient first = new PlayerMumbleClient(server, UUID.randomUUID());
+		PlayerMumbleClient second = new PlayerMumbleClient(server, UUID.randomUUID());
+
+		// The clients are not playing, there is no game port to check
+		CompletableFuture<Optional<PlayerMumbleClient>> result = new GamePortAnalyzer(server, Arrays.asList(first, second)).checkPortByMumble(null);
+
+		assertTrue(result.isDone());
+		assertFalse(result.join().isPresent());
+	}
+
+	@Test
+	public void completesEmptyWhenServerIsClosing() {
+		PlayerMumbleClient client = new PlayerMumbleClient(server, UUID.randomUUID());
+		server.getScheduler().shutdownNow();
+
+		CompletableFuture<Optional<PlayerMumbleClient>> result = new GamePortAnalyzer(server, Arrays.asList(client)).checkPortByGame(PORT);
+
+		assertTrue(result.isDone());
+		assertFalse(result.join().isPresent());
+	}
+
+	@Test
+	public void completesOnSchedulerWhenClientsDoNotAnswer() throws Exception {
+		FakeTcpConnection connection = new FakeTcpConnection();
+		PlayerMumbleClient client = connect(connection);
+
+		CompletableFuture<Optional<PlayerMumbleClient>> result = new GamePortAnalyzer(server, Arrays.asList(client)).checkPortByGame(PORT);
+		CompletableFuture<String> thread = result.thenApply(optional -> Thread.currentThread().getName());
+
+		// The global timeout is handled by the scheduler of the server rather than by a thread of the JDK
+		assertEquals(String.format("%s_Scheduler", server.getName()), thread.get(TIMEOUT, TimeUnit.MILLISECONDS));
+		assertFalse(result.join().isPresent());
+		assertEquals(1, connection.getSent().size());
+	}
+
+	@Test
+	public void withdrawsRequestsNotWrittenOnceCompleted() throws Exception {
+		FakeTcpConnection connection = new FakeTcpConnection();
+		PlayerMumbleClient client = connect(connection);
+
+		// Blocking the writer of the client so that the request stays in the outbound queue
+		CountDownLatch release = new CountDownLatch(1), blocked = new CountDownLatch(1);
+		MumbleCallbackMessage blocker = FakeTcpConnection.message(), marker = FakeTcpConnection.message();
+		connection.setOnSend(message -> {
+			if (message != blocker)
+				return;
+
+			blocked.countDown();
+			try {
+				release.await(TIMEOUT, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		client.send(blocker);
+		assertTrue(blocked.await(TIMEOUT, TimeUnit.MILLISECONDS));
+
+		CompletableFuture<Optional<PlayerMumbleClient>> result = new GamePortAnalyzer(server, Arrays.asList(client)).checkPortByGame(PORT);
+		assertFalse(result.get(TIMEOUT, TimeUnit.MILLISECONDS).isPresent());
+
+		// The marker is written once the pending messages have been drained
+		client.send(marker);
+		release.countDown();
+		assertTrue(FakeTcpConnection.await(() -> connection.getSent().contains(marker), TIMEOUT));
+		assertEquals(Arrays.asList(blocker, marker), connection.getSent());
+	}
+
+	/**
+	 * Creates a client connected with the given connection. The negotiation of the protocol version is not started so that only the
+	 * messages sent by the analyzer are written on the connection.
+	 *
+	 * @param connection The connection of the client.
+	 *
+	 * @return The created client.
+	 */
+	private PlayerMumbleClient connect(FakeTcpConnection connection) {
+		PlayerMumbleClient client = new PlayerMumbleClient(server, UUID.randomUUID()) {
+			@Override
+			protected void startHandshake() {
+			}
+		};
+		client.setTcpConnection(connection.getConnection());
+		return client;
+	}
+}
@@ -0,0 +1,208 @@
+package fr.pederobien.mumble.server.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import fr.pederobien.mumble.common.impl.MumbleCallbackMessage;
+import fr.pederobien.mumble.common.impl.MumbleIdentifier;
+import fr.pederobien.mumble.server.impl.OutboundQueue.OverflowPolicy;
+
+public class OutboundQueueTest {
+	private FakeTcpConnection connection;
+	private ManualExecutor executor;
+
+	@BeforeEach
+	public void setup() {
+		connection = new FakeTcpConnection();
+		executor = new ManualExecutor();
+	}
+
+	@Test
+	public void sendsMessagesInOrderWithOneDrain() {
+		OutboundQueue queue = create(8, OverflowPolicy.DROP_OLDEST);
+		MumbleCallbackMessage first = FakeTcpConnection.message(), second = FakeTcpConnection.message();
+		MumbleCallbackMessage third = FakeTcpConnection.message();
+
+		queue.offer(first, null, false);
+		queue.offer(second, null, true);
+		queue.offer(third, null, false);
+
+		assertEquals(1, executor.size());
+		assertEquals(2, queue.size());
+
+		executor.runAll();
+		assertEquals(Arrays.asList(first, second, third), connection.getSent());
+		assertEquals(0, queue.size());
+	}
+
+	@Test
+	public void replacesCoalescedNotificationInPlace() {
+		OutboundQueue queue = create(8, OverflowPolicy.DROP_OLDEST);
+		OutboundQueue.Key key = OutboundQueue.key(MumbleIdentifier.IS_GAME_PORT_USED, this);
+		MumbleCallbackMessage superseded = FakeTcpConnection.message(), other = FakeTcpConnection.message();
+		MumbleCallbackMessage latest = FakeTcpConnection.message();
+
+		queue.offer(superseded, key, false);
+		queue.offer(other, null, false);
+		queue.offer(latest, key, false);
+		assertEquals(2, queue.size());
+
+		executor.runAll();
+		assertEquals(Arrays.asList(latest, other), connection.getSent());
+	}
+
+	@Test
+	public void coalescesOnlyMessagesWithTheSameKey() {
+		OutboundQueue queue = create(8, OverflowPolicy.DROP_OLDEST);
+		MumbleCallbackMessage first = FakeTcpConnection.message(), second = FakeTcpConnection.message();
+
+		queue.offer(first, OutboundQueue.key(MumbleIdentifier.IS_GAME_PORT_USED, new Object()), false);
+		queue.offer(second, OutboundQueue.key(MumbleIdentifier.IS_GAME_PORT_USED, new Object()), false);
+
+		executor.runAll();
+		assertEquals(Arrays.asList(first, second), connection.getSent());
+	}
+
+	@Test
+	public void dropsNewestNotificationButNeverReliableMessages() {
+		OutboundQueue queue = create(2, OverflowPolicy.DROP_NEWEST);
+		MumbleCallbackMessage first = FakeTcpConnection.message(), second = FakeTcpConnection.message();
+		MumbleCallbackMessage reliable = FakeTcpConnection.message(), dropped = FakeTcpConnection.message();
+
+		queue.offer(first, null, false);
+		queue.offer(second, null, false);
+		queue.offer(reliable, null, true);
+		queue.offer(dropped, null, false);
+
+		executor.runAll();
+		assertEquals(Arrays.asList(first, second, reliable), connection.getSent());
+	}
+
+	@Test
+	public void dropsOldestNotificationButNeverReliableMessages() {
+		OutboundQueue queue = create(2, OverflowPolicy.DROP_OLDEST);
+		MumbleCallbackMessage reliable = FakeTcpConnection.message(), dropped = FakeTcpConnection.message();
+		MumbleCallbackMessage second = FakeTcpConnection.message(), third = FakeTcpConnection.message();
+
+		queue.offer(reliable, null, true);
+		queue.offer(dropped, null, false);
+		queue.offer(second, null, false);
+		queue.offer(third, null, false);
+		assertEquals(2, queue.size());
+
+		executor.runAll();
+		assertEquals(Arrays.asList(reliable, second, third), connection.getSent());
+	}
+
+	@Test
+	public void disposesConnectionWhenFullWithDisconnectPolicy() {
+		OutboundQueue queue = create(1, OverflowPolicy.DISCONNECT);
+
+		queue.offer(FakeTcpConnection.message(), null, false);
+		queue.offer(FakeTcpConnection.message(), null, false);
+		assertTrue(connection.isDisposed());
+
+		// The messages offered once the queue has been disposed are ignored
+		queue.offer(FakeTcpConnection.message(), null, true);
+		executor.runAll();
+		assertEquals(0, connection.getSent().size());
+		assertEquals(0, queue.size());
+	}
+
+	@Test
+	public void cancelWithdrawsPendingMessage() {
+		OutboundQueue queue = create(8, OverflowPolicy.DROP_OLDEST);
+		OutboundQueue.Key key = OutboundQueue.key(MumbleIdentifier.IS_GAME_PORT_USED, this);
+		MumbleCallbackMessage cancelled = FakeTcpConnection.message(), other = FakeTcpConnection.message();
+
+		queue.offer(cancelled, key, true);
+		queue.offer(other, null, false);
+		queue.cancel(key);
+
+		executor.runAll();
+		assertEquals(Arrays.asList(other), connection.getSent());
+	}
+
+	@Test
+	public void keepsDrainingAfterSendError() {
+		OutboundQueue queue = create(8, OverflowPolicy.DROP_OLDEST);
+		MumbleCallbackMessage failing = FakeTcpConnection.message(), next = FakeTcpConnection.message();
+		connection.setOnSend(message -> {
+			if (message == failing)
+				throw new IllegalStateException("Expected failure");
+		});
+
+		queue.offer(failing, null, false);
+		queue.offer(next, null, false);
+
+		executor.runAll();
+		assertEquals(Arrays.asList(next), connection.getSent());
+	}
+
+	@Test
+	public void runsOnWriteJustBeforeSending() {
+		OutboundQueue queue = create(8, OverflowPolicy.DROP_OLDEST);
+		MumbleCallbackMessage message = FakeTcpConnection.message();
+		List<Integer> sentBeforeWrite = new ArrayList<Integer>();
+
+		queue.offer(message, null, true, () -> sentBeforeWrite.add(connection.getSent().size()));
+		assertEquals(0, sentBeforeWrite.size());
+
+		executor.runAll();
+		assertEquals(Arrays.asList(0), sentBeforeWrite);
+		assertEquals(Arrays.asList(message), connection.getSent());
+	}
+
+	@Test
+	public void discardsMessagesWhenExecutorRejectsDrain() {
+		OutboundQueue queue = create(8, OverflowPolicy.DROP_OLDEST);
+		executor.isShutdown = true;
+		queue.offer(FakeTcpConnection.message(), null, false);
+		assertEquals(0, queue.size());
+
+		executor.isShutdown = false;
+		queue.offer(FakeTcpConnection.message(), null, false);
+		assertEquals(0, executor.size());
+		assertEquals(0, connection.getSent().size());
+	}
+
+	private OutboundQueue create(int capacity, OverflowPolicy policy) {
+		return new OutboundQueue(connection.getConnection(), executor, capacity, policy);
+	}
+
+	/**
+	 * Executor whose tasks are run by the test thread on demand.
+	 */
+	private static class ManualExecutor implements Executor {
+		private Deque<Runnable> tasks = new ArrayDeque<Runnable>();
+		private boolean isShutdown;
+
+		@Override
+		public void execute(Runnable command) {
+			if (isShutdown)
+				throw new RejectedExecutionException();
+			tasks.add(command);
+		}
+
+		private int size() {
+			return tasks.size();
+		}
+
+		private void runAll() {
+			Runnable task;
+			while ((task = tasks.poll()) != null)
+				task.run();
+		}
+	}
+}
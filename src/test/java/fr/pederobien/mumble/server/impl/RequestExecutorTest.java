@@ -0,0 +1,123 @@
+package fr.pederobien.mumble.server.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class RequestExecutorTest {
+	private static final long TIMEOUT = 5000;
+	private RequestExecutor executor;
+
+	@BeforeEach
+	public void setup() {
+		executor = new RequestExecutor("RequestExecutorTest");
+	}
+
+	@AfterEach
+	public void tearDown() {
+		executor.shutdown();
+	}
+
+	@Test
+	public void runsTasksOfOneLaneInOrder() throws InterruptedException {
+		RequestExecutor.Lane lane = executor.newLane();
+		List<Integer> order = Collections.synchronizedList(new ArrayList<Integer>());
+		List<Integer> expected = new ArrayList<Integer>();
+		CountDownLatch done = new CountDownLatch(100);
+
+		for (int i = 0; i < 100; i++) {
+			int index = i;
+			expected.add(index);
+			lane.execute(() -> {
+				order.add(index);
+				done.countDown();
+			});
+		}
+
+		assertTrue(done.await(TIMEOUT, TimeUnit.MILLISECONDS));
+		assertEquals(expected, order);
+	}
+
+	@Test
+	public void runsLanesInParallel() throws InterruptedException {
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch blocked = new CountDownLatch(1), other = new CountDownLatch(1);
+
+		executor.newLane().execute(() -> {
+			blocked.countDown();
+			await(release);
+		});
+		assertTrue(blocked.await(TIMEOUT, TimeUnit.MILLISECONDS));
+
+		// A lane blocked by a slow request does not prevent the other lanes from being processed
+		executor.newLane().execute(() -> other.countDown());
+		assertTrue(other.await(TIMEOUT, TimeUnit.MILLISECONDS));
+		release.countDown();
+	}
+
+	@Test
+	public void keepsRunningTasksAfterError() throws InterruptedException {
+		RequestExecutor.Lane lane = executor.newLane();
+		CountDownLatch done = new CountDownLatch(1);
+
+		lane.execute(() -> {
+			throw new IllegalStateException("Expected failure");
+		});
+		lane.execute(() -> done.countDown());
+
+		assertTrue(done.await(TIMEOUT, TimeUnit.MILLISECONDS));
+		assertTrue(FakeTcpConnection.await(() -> executor.getExecutedCount() == 2, TIMEOUT));
+	}
+
+	@Test
+	public void countsPendingTasks() throws InterruptedException {
+		RequestExecutor.Lane lane = executor.newLane();
+		CountDownLatch release = new CountDownLatch(1), blocked = new CountDownLatch(1);
+
+		lane.execute(() -> {
+			blocked.countDown();
+			await(release);
+		});
+		assertTrue(blocked.await(TIMEOUT, TimeUnit.MILLISECONDS));
+
+		for (int i = 0; i < 3; i++)
+			lane.execute(() -> {
+			});
+
+		assertEquals(3, lane.size());
+		assertEquals(3, executor.getQueueDepth());
+
+		release.countDown();
+		assertTrue(FakeTcpConnection.await(() -> executor.getQueueDepth() == 0 && executor.getExecutedCount() == 4, TIMEOUT));
+		assertEquals(0, lane.size());
+	}
+
+	@Test
+	public void discardsTasksOnceShutdown() {
+		RequestExecutor.Lane lane = executor.newLane();
+		executor.shutdown();
+
+		lane.execute(() -> {
+		});
+
+		assertEquals(0, lane.size());
+		assertEquals(0, executor.getQueueDepth());
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await(TIMEOUT, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
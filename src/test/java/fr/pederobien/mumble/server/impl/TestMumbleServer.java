@@ -0,0 +1,30 @@
+package fr.pederobien.mumble.server.impl;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Mumble server that is never opened: no socket is bound, only its executors, its request managers and its inbound router are
+ * used by the tests.
+ */
+class TestMumbleServer extends AbstractMumbleServer {
+	private static final AtomicInteger IDS = new AtomicInteger();
+
+	TestMumbleServer() {
+		super(String.format("TestMumbleServer_%s", IDS.incrementAndGet()));
+	}
+
+	@Override
+	public boolean isOpened() {
+		return false;
+	}
+
+	/**
+	 * Stops the threads of this server.
+	 */
+	void dispose() {
+		getScheduler().shutdownNow();
+		getRequestExecutor().shutdown();
+		((ExecutorService) getWriters()).shutdownNow();
+	}
+}